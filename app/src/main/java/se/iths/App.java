@@ -1,38 +1,123 @@
 package se.iths;
 
+import se.iths.persistency.AsyncCRUD;
+import se.iths.persistency.FetchPlan;
+import se.iths.persistency.HighWaterMark;
+import se.iths.persistency.Page;
+import se.iths.persistency.cache.CachingCRUD;
+import se.iths.persistency.cache.EntityCache;
 import se.iths.persistency.dao.AlbumDAO;
 import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.CatalogDAO;
+import se.iths.persistency.dao.ChangeLogDAO;
 import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.dao.UnitOfWork;
 import se.iths.persistency.model.Album;
 import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.CatalogChange;
 import se.iths.persistency.model.Track;
+import se.iths.persistency.search.EntityType;
+import se.iths.persistency.search.SearchHit;
+import se.iths.persistency.search.SearchIndex;
+import se.iths.persistency.snapshot.CatalogSnapshot;
+import se.iths.persistency.snapshot.SnapshotFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class App {
 
   protected static final ArtistDAO artistDAO = new ArtistDAO();
   protected static final AlbumDAO albumDAO = new AlbumDAO();
   protected static final TrackDAO trackDAO = new TrackDAO();
-  protected static HashMap<Long, Artist> artists = new HashMap<>();
+  protected static final CatalogDAO catalogDAO = new CatalogDAO();
+  protected static final ChangeLogDAO changeLogDAO = new ChangeLogDAO();
+  // Artists are cached with their albums and tracks, albums and tracks on their own
+  protected static final EntityCache<Artist> artistCache = new EntityCache<>(1_000);
+  protected static final CachingCRUD<Album> albumCache = new CachingCRUD<>(albumDAO, Album::getAlbumId, new EntityCache<>(10_000));
+  protected static final CachingCRUD<Track> trackCache = new CachingCRUD<>(trackDAO, Track::getTrackId, new EntityCache<>(100_000));
+  protected static final AsyncCRUD<Artist> asyncArtistDAO = new AsyncCRUD<>(artistDAO);
+  protected static final Map<Long, Artist> artists = new ConcurrentHashMap<>();
+  // Changes to an artist, its albums or tracks are made holding the artist's lock
+  private static final StripedLocks artistLocks = new StripedLocks(64);
+  // Held while the catalog is loaded, refreshed or indexed. Not synchronized, which
+  // would pin the carrier of a virtual thread for as long as the queries run.
+  private static final ReentrantLock catalogLock = new ReentrantLock();
+  // Catalog opened from a snapshot file, and the artists changed since then
+  // that must be read from the database instead
+  protected static volatile CatalogSnapshot snapshot;
+  private static final Set<Long> changedSinceSnapshot = ConcurrentHashMap.newKeySet();
+  // How far the database had come when the catalog was last loaded or refreshed
+  private static volatile HighWaterMark syncedMark;
+  // Built from the catalog by the first search, then kept up to date with every change
+  private static volatile SearchIndex searchIndex;
   public static void main(String[] args) {
     App app = new App();
     try {
 
-      app.load();
+      String snapshotFile = System.getProperty("catalog.snapshot");
+      if (snapshotFile != null) app.load(Path.of(snapshotFile));
+      else app.load();
       printList();
 
     } catch (SQLException e) {
       System.err.printf("Error reading database %s%n", e);
+    } catch (IOException e) {
+      System.err.printf("Error reading snapshot %s%n", e);
     }
   }
 
   public void load() throws SQLException {
     loadArtistsAlbumsTracks();
+    warnIfNotSynced();
+  }
+
+  /**
+   * Opens the snapshot file instead of loading the catalog when it was written
+   * at the database's current high-water mark. Otherwise the catalog is loaded
+   * and written to the file for the next start. Without the change log there
+   * is no mark to check a snapshot against, and the file isn't used.
+   */
+  public void load(Path snapshotFile) throws SQLException, IOException {
+    HighWaterMark mark = catalogDAO.findHighWaterMark().orElse(null);
+    Optional<CatalogSnapshot> opened = mark == null ? Optional.empty() : SnapshotFile.open(snapshotFile, mark);
+    if (opened.isPresent()) {
+      artists.clear();
+      artistCache.invalidateAll();
+      albumCache.invalidateAll();
+      trackCache.invalidateAll();
+      changedSinceSnapshot.clear();
+      snapshot = opened.get();
+      syncedMark = mark;
+      searchIndex = null;
+      return;
+    }
+    loadArtistsAlbumsTracks();
+    if (mark != null) SnapshotFile.write(snapshotFile, CatalogSnapshot.of(artists.values()), mark);
+    warnIfNotSynced();
+  }
+
+  private static void warnIfNotSynced() {
+    if (syncedMark == null) {
+      System.err.println("No CatalogChange table, run db_changelog.sql. Until then every refresh reloads the whole catalog.");
+    }
   }
 
   public static void printList() {
+    CatalogSnapshot current = snapshot;
+    if (current != null) {
+      current.streamArtists().forEach(System.out::println);
+      return;
+    }
     for(Artist artist : artists.values()){
       System.out.println(artist);
     }
@@ -43,210 +128,526 @@ public class App {
     Optional<Artist> artist = artistDAO.create(new Artist(name));
     if (artist.isPresent()) {
       artists.put(artist.get().getArtistId(), artist.get());
+      artistCache.put(artist.get().getArtistId(), artist.get());
+      index(index -> index.put(artist.get()));
       return artist;
     }
     return Optional.empty();
   }
 
   protected static Optional<Album> addAlbum(long artistId, String title) throws SQLException {
-    Optional<Artist> artist = findArtistById(artistId);
-    if (artist.isPresent()) {
-      Optional<Album> album = albumDAO.create(new Album(title, artist.get().getArtistId()));
-      album.ifPresent(a -> artist.get().add(a));
-      return album;
+    Lock lock = lockForChange(artistId);
+    try {
+      Optional<Artist> artist = findArtistById(artistId, FetchPlan.ARTIST_ONLY);
+      if (artist.isPresent()) {
+        Optional<Album> album = albumCache.create(new Album(title, artist.get().getArtistId()));
+        // An artist whose albums aren't loaded yet will find the new one when they are
+        album.ifPresent(a -> {
+          if (artist.get().isAlbumsLoaded()) artist.get().add(a);
+          index(index -> index.put(a));
+        });
+        return album;
+      }
+      return Optional.empty();
+    } finally {
+      lock.unlock();
     }
-    return Optional.empty();
   }
 
   protected static Optional<Track> addTrack(long albumId, String name) throws SQLException {
-    Optional<Album> album = findAlbumById(albumId);
+    Optional<Album> album = albumCache.findById(albumId);
     if (album.isPresent()) {
-      Optional<Artist> artist = findArtistById(album.get().getArtistId());
-      if (artist.isPresent()) {
-        Optional<Track> track = trackDAO.create(new Track(name, album.get().getAlbumId()));
-        track.ifPresent(t -> album.get().add(t));
+      Lock lock = lockForChange(album.get().getArtistId());
+      try {
+        Optional<Track> track = trackCache.create(new Track(name, albumId));
+        // Only a cached tree needs the new track, others load it when they're read
+        Artist tree = artistCache.get(album.get().getArtistId());
+        Album treeAlbum = tree == null ? null : tree.getAlbum(albumId);
+        if (treeAlbum != null) track.ifPresent(treeAlbum::add);
+        track.ifPresent(t -> index(index -> index.put(t)));
         return track;
+      } finally {
+        lock.unlock();
       }
     }
     return Optional.empty();
   }
 
+  // Changes to an artist's tree are made holding its lock, and from then on
+  // the tree is read from the database rather than the snapshot
+  private static Lock lockForChange(long artistId) {
+    Lock lock = artistLocks.get(artistId);
+    lock.lock();
+    changedSinceSnapshot.add(artistId);
+    return lock;
+  }
+
   // READ - load all, find all & get new objects by id from database
   private void loadArtistsAlbumsTracks() throws SQLException {
-    artists.clear();
-    for (Artist artist : artistDAO.findAll()) {
-      artists.put(artist.getArtistId(), artist);
-      Collection<Album> artistAlbums = albumDAO.findByArtistId(artist.getArtistId());
-      artist.addAll(artistAlbums);
-      for (Album album : artistAlbums) {
-        Collection<Track> albumTracks = trackDAO.findByAlbumId(album.getAlbumId());
-        album.addAll(albumTracks);
-      }
-    }
+    loadCatalog();
   }
 
   protected static Collection<Album> findAllAlbums() throws SQLException {
-    artists.clear();
     Collection<Album> albums = new ArrayList<>();
-    for (Artist artist : artistDAO.findAll()) {
-      artists.put(artist.getArtistId(), artist);
-      Collection<Album> artistAlbums = albumDAO.findByArtistId(artist.getArtistId());
-      artist.addAll(artistAlbums);
-      albums.addAll(artistAlbums);
-      for (Album album : artistAlbums) {
-        Collection<Track> albumTracks = trackDAO.findByAlbumId(album.getAlbumId());
-        album.addAll(albumTracks);
-      }
+    for (Artist artist : syncCatalog()) {
+      albums.addAll(artist.getAlbums());
     }
     return albums;
   }
 
   protected static Collection<Track> findAllTracks() throws SQLException {
-    artists.clear();
     Collection<Track> tracks = new ArrayList<>();
-    for (Artist artist : artistDAO.findAll()) {
-      artists.put(artist.getArtistId(), artist);
-      Collection<Album> artistAlbums = albumDAO.findByArtistId(artist.getArtistId());
-      artist.addAll(artistAlbums);
-      for (Album album : artistAlbums) {
-        Collection<Track> albumTracks = trackDAO.findByAlbumId(album.getAlbumId());
-        album.addAll(albumTracks);
-        tracks.addAll(albumTracks);
+    for (Artist artist : syncCatalog()) {
+      for (Album album : artist.getAlbums()) {
+        tracks.addAll(album.getTracks());
       }
     }
     return tracks;
   }
 
+  // The whole catalog as objects, with the changes since it was loaded applied.
+  // A catalog opened from a snapshot has to be loaded first.
+  private static Collection<Artist> syncCatalog() throws SQLException {
+    if (snapshot != null) return loadCatalog();
+    refresh();
+    return artists.values();
+  }
+
+  private static Collection<Artist> loadCatalog() throws SQLException {
+    catalogLock.lock();
+    try {
+      // Read first, so what changes while the catalog loads is synced again by the next refresh.
+      // Without a change log there is no mark, and every refresh loads the catalog again.
+      HighWaterMark mark = catalogDAO.findHighWaterMark().orElse(null);
+      Collection<Artist> catalog = catalogDAO.findAll();
+      snapshot = null;
+      artists.clear();
+      artistCache.invalidateAll();
+      albumCache.invalidateAll();
+      trackCache.invalidateAll();
+      for (Artist artist : catalog) {
+        artists.put(artist.getArtistId(), artist);
+        artistCache.put(artist.getArtistId(), artist);
+      }
+      syncedMark = mark;
+      searchIndex = null;
+      return catalog;
+    } finally {
+      catalogLock.unlock();
+    }
+  }
+
+  /**
+   * Applies what changed in the database since the catalog was last loaded
+   * or refreshed. The change log tells which rows were updated or deleted and
+   * the high-water mark which ones were added, and only the trees of the
+   * artists those rows belong to are read again. The cost follows the amount
+   * of change, not the size of the catalog.
+   */
+  protected static void refresh() throws SQLException {
+    catalogLock.lock();
+    try {
+      HighWaterMark from = syncedMark;
+      if (from == null) {
+        loadCatalog();
+        return;
+      }
+      HighWaterMark to = catalogDAO.findHighWaterMark().orElse(null);
+      if (to == null) {
+        loadCatalog();
+        return;
+      }
+      if (to.equals(from)) return;
+      Set<Long> artistIds = new HashSet<>();
+      Set<Long> albumIds = new HashSet<>();
+      Set<Long> changedAlbumIds = new HashSet<>();
+      Set<Long> changedTrackIds = new HashSet<>();
+      // Changed rows belong to the tree they were in and the one they are in now
+      for (CatalogChange change : changeLogDAO.findBetween(from.getLastChangeId(), to.getLastChangeId())) {
+        switch (change.getTableName()) {
+          case ChangeLogDAO.ARTIST:
+            artistIds.add(change.getRowId());
+            break;
+          case ChangeLogDAO.ALBUM:
+            changedAlbumIds.add(change.getRowId());
+            artistIds.add(change.getParentId());
+            break;
+          case ChangeLogDAO.TRACK:
+            changedTrackIds.add(change.getRowId());
+            albumIds.add(change.getParentId());
+            break;
+        }
+      }
+      albumDAO.findByIds(changedAlbumIds).values().forEach(album -> artistIds.add(album.getArtistId()));
+      trackDAO.findByIds(changedTrackIds).values().forEach(track -> albumIds.add(track.getAlbumId()));
+      findAfter(artistDAO::findPage, from.getMaxArtistId()).forEach(artist -> artistIds.add(artist.getArtistId()));
+      findAfter(albumDAO::findPage, from.getMaxAlbumId()).forEach(album -> artistIds.add(album.getArtistId()));
+      findAfter(trackDAO::findPage, from.getMaxTrackId()).forEach(track -> albumIds.add(track.getAlbumId()));
+      albumDAO.findByIds(albumIds).values().forEach(album -> artistIds.add(album.getArtistId()));
+      artistIds.remove(0L);
+
+      Map<Long, Artist> trees = new HashMap<>();
+      catalogDAO.findByArtistIds(artistIds).forEach(tree -> trees.put(tree.getArtistId(), tree));
+      albumCache.invalidateAll(changedAlbumIds);
+      trackCache.invalidateAll(changedTrackIds);
+      for (long artistId : artistIds) {
+        Lock lock = lockForChange(artistId);
+        try {
+          Artist tree = trees.get(artistId);
+          if (tree == null) {
+            artists.remove(artistId);
+            artistCache.invalidate(artistId);
+            index(index -> index.remove(EntityType.ARTIST, artistId));
+          } else {
+            // A snapshot based catalog keeps only the changed trees, in the cache
+            if (snapshot == null) artists.put(artistId, tree);
+            artistCache.put(artistId, tree);
+            index(index -> index.putTree(tree));
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+      syncedMark = to;
+    } finally {
+      catalogLock.unlock();
+    }
+  }
+
+  private interface PageQuery<T> {
+    Page<T> find(long afterId, int limit) throws SQLException;
+  }
+
+  private static <T> List<T> findAfter(PageQuery<T> query, long afterId) throws SQLException {
+    List<T> rows = new ArrayList<>();
+    Page<T> page;
+    do {
+      page = query.find(afterId, 1_000);
+      rows.addAll(page.getItems());
+      afterId = page.getLastId();
+    } while (page.hasNext());
+    return rows;
+  }
+
   protected static Optional<Artist> findArtistById(long artistId) throws SQLException {
-    Optional<Artist> artist = artistDAO.findById(artistId);
-    if (artist.isPresent()) {
-      Collection<Album> artistAlbums = albumDAO.findByArtistId(artistId);
-      for (Album album : artistAlbums) {
-        Collection<Track> albumTracks = trackDAO.findByAlbumId(album.getAlbumId());
-        album.addAll(albumTracks);
+    return findArtistById(artistId, FetchPlan.DEEP);
+  }
+
+  // Cached artists are always whole trees. Shallower plans aren't cached,
+  // the rest of their tree loads lazily when it's accessed.
+  protected static Optional<Artist> findArtistById(long artistId, FetchPlan plan) throws SQLException {
+    Artist cached = artistCache.get(artistId);
+    if (cached != null) return Optional.of(cached);
+    CatalogSnapshot current = snapshot;
+    if (current != null && !changedSinceSnapshot.contains(artistId)) {
+      Optional<Artist> artist = current.findArtistById(artistId);
+      if (artist.isPresent()) {
+        artistCache.put(artistId, artist.get());
+        return artist;
+      }
+    }
+    if (plan == FetchPlan.DEEP) return reloadArtist(artistId);
+    return catalogDAO.findByArtistId(artistId, plan);
+  }
+
+  // Cached artists are returned right away, the others are loaded in parallel
+  protected static Map<Long, Artist> findArtistsById(Collection<Long> artistIds) throws SQLException {
+    Map<Long, CompletableFuture<Optional<Artist>>> lookups = new LinkedHashMap<>();
+    for (long artistId : artistIds) {
+      Artist cached = artistCache.get(artistId);
+      lookups.put(artistId, cached != null
+          ? CompletableFuture.completedFuture(Optional.of(cached))
+          : asyncArtistDAO.supply(() -> reloadArtist(artistId)));
+    }
+    Map<Long, Artist> found = new LinkedHashMap<>();
+    try {
+      for (Map.Entry<Long, CompletableFuture<Optional<Artist>>> lookup : lookups.entrySet()) {
+        lookup.getValue().join().ifPresent(artist -> found.put(lookup.getKey(), artist));
       }
-      artist.get().addAll(artistAlbums);
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+      throw e;
+    }
+    return found;
+  }
+
+  private static Optional<Artist> reloadArtist(long artistId) throws SQLException {
+    Optional<Artist> artist = catalogDAO.findByArtistId(artistId);
+    if (artist.isPresent()) {
+      artistCache.put(artistId, artist.get());
       artists.replace(artistId, artist.get());
-      return artist;
+    } else {
+      artistCache.invalidate(artistId);
     }
-    return Optional.empty();
+    return artist;
   }
 
+  // Albums and tracks are returned from their artist's cached tree, which is
+  // reloaded once if it doesn't know about them yet. The snapshot can only
+  // tell which tree to look in, the tree decides whether they still exist.
   protected static Optional<Album> findAlbumById(long albumId) throws SQLException {
-    Optional<Album> album = albumDAO.findById(albumId);
+    CatalogSnapshot current = snapshot;
+    Optional<Album> album = current != null ? current.findAlbumById(albumId) : Optional.empty();
+    if (album.isEmpty()) album = albumCache.findById(albumId);
     if (album.isPresent()) {
-      Optional<Artist> artist = findArtistById(album.get().getArtistId());
-      if (artist.isPresent()) {
-        Collection<Track> albumTracks = trackDAO.findByAlbumId(albumId);
-        album.get().addAll(albumTracks);
-        artist.get().replace(album.get());
-        artists.replace(artist.get().getArtistId(), artist.get());
-        return album;
+      long artistId = album.get().getArtistId();
+      Optional<Artist> artist = findArtistById(artistId);
+      if (artist.isPresent() && artist.get().getAlbum(albumId) == null) artist = reloadArtist(artistId);
+      if (artist.isPresent() && artist.get().getAlbum(albumId) != null) {
+        return Optional.of(artist.get().getAlbum(albumId));
       }
     }
     return Optional.empty();
   }
 
   protected static Optional<Track> findTrackById(long trackId) throws SQLException {
-    Optional<Track> track = trackDAO.findById(trackId);
+    CatalogSnapshot current = snapshot;
+    Optional<Track> track = current != null ? current.findTrackById(trackId) : Optional.empty();
+    if (track.isEmpty()) track = trackCache.findById(trackId);
     if (track.isPresent()) {
       Optional<Album> album = findAlbumById(track.get().getAlbumId());
-      if (album.isPresent()) {
-        Optional<Artist> artist = findArtistById(album.get().getArtistId());
-        if (artist.isPresent()) {
-          album.get().replace(track.get());
-          artist.get().replace(album.get());
-          artists.replace(artist.get().getArtistId(), artist.get());
-        }
-        return track;
+      if (album.isPresent() && album.get().getTrack(trackId) == null) {
+        reloadArtist(album.get().getArtistId());
+        album = findAlbumById(track.get().getAlbumId());
+      }
+      if (album.isPresent() && album.get().getTrack(trackId) != null) {
+        return Optional.of(album.get().getTrack(trackId));
       }
     }
     return Optional.empty();
   }
 
+  // SEARCH - finds artists, albums and tracks by name
+  protected static List<SearchHit> search(String query, int limit) throws SQLException {
+    return searchIndex().search(query, limit);
+  }
+
+  protected static List<SearchHit> complete(String input, int limit) throws SQLException {
+    return searchIndex().complete(input, limit);
+  }
+
+  private static SearchIndex searchIndex() throws SQLException {
+    catalogLock.lock();
+    try {
+      SearchIndex index = searchIndex;
+      if (index != null) return index;
+      index = new SearchIndex();
+      CatalogSnapshot current = snapshot;
+      if (current != null) {
+        current.streamArtists().forEach(index::putTree);
+        // Changed trees are read from the database rather than the snapshot
+        for (long artistId : changedSinceSnapshot) {
+          Optional<Artist> artist = findArtistById(artistId);
+          if (artist.isPresent()) index.putTree(artist.get());
+          else index.remove(EntityType.ARTIST, artistId);
+        }
+      } else {
+        if (syncedMark == null) loadCatalog();
+        artists.values().forEach(index::putTree);
+      }
+      searchIndex = index;
+      return index;
+    } finally {
+      catalogLock.unlock();
+    }
+  }
+
+  // Changes made before the first search are picked up when the index is built
+  private static void index(Consumer<SearchIndex> change) {
+    SearchIndex index = searchIndex;
+    if (index != null) change.accept(index);
+  }
+
   // UPDATE - renames objects and pushes to database
   protected static Optional<Artist> updateArtist(long artistId, String newName) throws SQLException {
-    Optional<Artist> artist = findArtistById(artistId);
-    if (artist.isPresent()) {
-      artist.get().setName(newName);
-      artistDAO.update(artist.get());
-      return artist;
+    Lock lock = lockForChange(artistId);
+    try {
+      Optional<Artist> artist = findArtistById(artistId, FetchPlan.ARTIST_ONLY);
+      if (artist.isPresent()) {
+        UnitOfWork work = new UnitOfWork();
+        work.register(artist.get()).setName(newName);
+        commit(work);
+        return artist;
+      }
+      return Optional.empty();
+    } finally {
+      lock.unlock();
     }
-    return Optional.empty();
   }
 
   protected static Optional<Album> updateAlbum(long albumId, String newTitle) throws SQLException {
     Optional<Album> album = findAlbumById(albumId);
     if (album.isPresent()) {
-      album.get().setTitle(newTitle);
-      albumDAO.update(album.get());
-      return album;
+      Lock lock = lockForChange(album.get().getArtistId());
+      try {
+        UnitOfWork work = new UnitOfWork();
+        work.register(album.get()).setTitle(newTitle);
+        commit(work);
+        return album;
+      } finally {
+        lock.unlock();
+      }
     }
     return Optional.empty();
   }
 
   protected static Optional<Track> updateTrack(long trackId, String newName) throws SQLException {
     Optional<Track> track = findTrackById(trackId);
-    if (track.isPresent()) {
-      track.get().setName(newName);
-      trackDAO.update(track.get());
-      return track;
+    Optional<Album> album = track.isPresent() ? albumCache.findById(track.get().getAlbumId()) : Optional.empty();
+    if (album.isPresent()) {
+      Lock lock = lockForChange(album.get().getArtistId());
+      try {
+        UnitOfWork work = new UnitOfWork();
+        work.register(track.get()).setName(newName);
+        commit(work);
+        return track;
+      } finally {
+        lock.unlock();
+      }
     }
     return Optional.empty();
   }
 
+  /**
+   * Writes what changed in the entities registered with the unit of work, in
+   * one transaction. Entities the caller got from App are the ones in the
+   * cached trees, and copies from elsewhere have their changes copied into
+   * the trees, so nothing is read again. Albums and tracks moved to another
+   * parent are put in place by the next {@link #refresh()}.
+   */
+  protected static int commit(UnitOfWork work) throws SQLException {
+    List<Artist> changedArtists = work.getDirty(Artist.class);
+    List<Album> changedAlbums = work.getDirty(Album.class);
+    List<Track> changedTracks = work.getDirty(Track.class);
+    int updated = work.commit();
+    for (Artist artist : changedArtists) {
+      changedSinceSnapshot.add(artist.getArtistId());
+      Artist tree = artistCache.get(artist.getArtistId());
+      if (tree != null) tree.setName(artist.getName());
+      artists.computeIfPresent(artist.getArtistId(), (id, listed) -> {
+        listed.setName(artist.getName());
+        return listed;
+      });
+    }
+    for (Album album : changedAlbums) {
+      albumCache.invalidate(album.getAlbumId());
+      changedSinceSnapshot.add(album.getArtistId());
+      Artist tree = artistCache.get(album.getArtistId());
+      Album treeAlbum = tree == null ? null : tree.getAlbum(album.getAlbumId());
+      if (treeAlbum != null) treeAlbum.setTitle(album.getTitle());
+    }
+    for (Track track : changedTracks) {
+      trackCache.invalidate(track.getTrackId());
+      Optional<Album> album = albumCache.findById(track.getAlbumId());
+      if (album.isEmpty()) continue;
+      changedSinceSnapshot.add(album.get().getArtistId());
+      Artist tree = artistCache.get(album.get().getArtistId());
+      Album treeAlbum = tree == null ? null : tree.getAlbum(track.getAlbumId());
+      Track treeTrack = treeAlbum == null ? null : treeAlbum.getTrack(track.getTrackId());
+      if (treeTrack != null) treeTrack.setName(track.getName());
+    }
+    index(index -> {
+      changedArtists.forEach(index::put);
+      changedAlbums.forEach(index::put);
+      changedTracks.forEach(index::put);
+    });
+    return updated;
+  }
+
   // DELETE - removes objects from database
   public static boolean deleteArtist(long artistId) throws SQLException {
-    Optional<Artist> artist = findArtistById(artistId);
-    int countAlbum = 0;
-    if (artist.isPresent()) {
-      for (Album album : artist.get().getAlbums()) {
-        int countTrack = 0;
-        for (Track track : album.getTracks()) {
-          if (trackDAO.delete(track)) countTrack++;
+    Lock lock = lockForChange(artistId);
+    try {
+      Optional<Artist> artist = findArtistById(artistId, FetchPlan.ARTIST_ONLY);
+      if (artist.isPresent()) {
+        // A whole tree knows the ids to invalidate, otherwise they are queried
+        // rather than loading the tree just to throw it away
+        Collection<Long> albumIds = new ArrayList<>();
+        Collection<Long> trackIds = new ArrayList<>();
+        if (isWholeTree(artist.get())) {
+          for (Album album : artist.get().getAlbums()) {
+            albumIds.add(album.getAlbumId());
+            trackIds.addAll(trackIds(album));
+          }
+        } else {
+          albumIds = artistDAO.findAlbumIds(artistId);
+          trackIds = artistDAO.findTrackIds(artistId);
+        }
+        // The cached tree is only touched once the delete is committed
+        boolean deletedFromDB = artistDAO.deleteCascade(artistId);
+        trackCache.invalidateAll(trackIds);
+        albumCache.invalidateAll(albumIds);
+        if (deletedFromDB) {
+          if (artist.get().isAlbumsLoaded()) artist.get().getAlbums().forEach(Album::removeAll);
+          artist.get().removeAll();
+          artists.remove(artistId);
+          artistCache.invalidate(artistId);
+          index(index -> index.remove(EntityType.ARTIST, artistId));
+          return true;
         }
-        if (countTrack == album.getTracks().size()) album.removeAll();
-        if (albumDAO.delete(album)) countAlbum++;
-      }
-      if (countAlbum == artist.get().getAlbums().size()) artist.get().removeAll();
-      boolean deletedFromDB = artistDAO.delete(artist.get());
-      if (deletedFromDB) {
-        artists.remove(artist.get().getArtistId());
-        return true;
       }
+      return false;
+    } finally {
+      lock.unlock();
     }
-    return false;
   }
 
   protected static boolean deleteAlbum(long albumId) throws SQLException {
     Optional<Album> album = findAlbumById(albumId);
     if (album.isPresent()) {
-      Optional<Artist> artist = findArtistById(album.get().getArtistId());
-      if(artist.isPresent()) {
-        int counter = 0;
-        for (Track track : album.get().getTracks()) {
-          if (trackDAO.delete(track)) counter++;
-        }
-        if (counter == album.get().getTracks().size()) album.get().removeAll();
-        boolean deletedFromDB = albumDAO.delete(album.get());
-        if (deletedFromDB) {
-          artist.get().remove(album.get());
-          return true;
+      Lock lock = lockForChange(album.get().getArtistId());
+      try {
+        Optional<Artist> artist = findArtistById(album.get().getArtistId());
+        if(artist.isPresent()) {
+          Collection<Long> trackIds = trackIds(album.get());
+          boolean deletedFromDB = albumDAO.deleteCascade(albumId);
+          trackCache.invalidateAll(trackIds);
+          albumCache.invalidate(albumId);
+          if (deletedFromDB) {
+            album.get().removeAll();
+            artist.get().remove(album.get());
+            index(index -> index.remove(EntityType.ALBUM, albumId));
+            return true;
+          }
         }
+      } finally {
+        lock.unlock();
       }
     }
     return false;
   }
 
+  private static boolean isWholeTree(Artist artist) {
+    if (!artist.isAlbumsLoaded()) return false;
+    for (Album album : artist.getAlbums()) {
+      if (!album.isTracksLoaded()) return false;
+    }
+    return true;
+  }
+
+  private static Collection<Long> trackIds(Album album) {
+    Collection<Long> trackIds = new ArrayList<>();
+    for (Track track : album.getTracks()) {
+      trackIds.add(track.getTrackId());
+    }
+    return trackIds;
+  }
+
   protected static boolean deleteTrack(long trackId) throws SQLException {
     Optional<Track> track = findTrackById(trackId);
     if (track.isPresent()) {
       Optional<Album> album = findAlbumById(track.get().getAlbumId());
       if (album.isPresent()) {
-        boolean deletedFromDB = trackDAO.delete(track.get());
-        if (deletedFromDB) {
-          album.get().remove(track.get());
-          return true;
+        Lock lock = lockForChange(album.get().getArtistId());
+        try {
+          boolean deletedFromDB = trackCache.deleteById(trackId);
+          if (deletedFromDB) {
+            album.get().remove(track.get());
+            index(index -> index.remove(EntityType.TRACK, trackId));
+            return true;
+          }
+        } finally {
+          lock.unlock();
         }
       }
     }
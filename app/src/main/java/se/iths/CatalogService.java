@@ -0,0 +1,119 @@
+package se.iths;
+
+import se.iths.persistency.AsyncCRUD;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the catalog operations of {@link App} asynchronously, one task per
+ * request. By default every request gets its own virtual thread when the
+ * runtime has them, so thousands of requests can wait on the connection pool
+ * without holding a platform thread each. On older runtimes, Java 17
+ * included, a cached pool of daemon threads is used instead. That pool has no
+ * bound: every request waiting for a connection holds a platform thread, and
+ * only the connection pool limits how many run at once. Pass a bounded
+ * executor there when requests can pile up.
+ */
+public class CatalogService implements AutoCloseable {
+    private final ExecutorService executor;
+
+    public CatalogService() {
+        this(AsyncCRUD.newPerTaskExecutor());
+    }
+
+    public CatalogService(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Optional<Artist>> addArtist(String name) {
+        return submit(() -> App.addArtist(name));
+    }
+
+    public CompletableFuture<Optional<Album>> addAlbum(long artistId, String title) {
+        return submit(() -> App.addAlbum(artistId, title));
+    }
+
+    public CompletableFuture<Optional<Track>> addTrack(long albumId, String name) {
+        return submit(() -> App.addTrack(albumId, name));
+    }
+
+    public CompletableFuture<Optional<Artist>> findArtistById(long artistId) {
+        return submit(() -> App.findArtistById(artistId));
+    }
+
+    public CompletableFuture<Optional<Album>> findAlbumById(long albumId) {
+        return submit(() -> App.findAlbumById(albumId));
+    }
+
+    public CompletableFuture<Optional<Track>> findTrackById(long trackId) {
+        return submit(() -> App.findTrackById(trackId));
+    }
+
+    public CompletableFuture<Optional<Artist>> updateArtist(long artistId, String newName) {
+        return submit(() -> App.updateArtist(artistId, newName));
+    }
+
+    public CompletableFuture<Optional<Album>> updateAlbum(long albumId, String newTitle) {
+        return submit(() -> App.updateAlbum(albumId, newTitle));
+    }
+
+    public CompletableFuture<Optional<Track>> updateTrack(long trackId, String newName) {
+        return submit(() -> App.updateTrack(trackId, newName));
+    }
+
+    public CompletableFuture<Boolean> deleteArtist(long artistId) {
+        return submit(() -> App.deleteArtist(artistId));
+    }
+
+    public CompletableFuture<Boolean> deleteAlbum(long albumId) {
+        return submit(() -> App.deleteAlbum(albumId));
+    }
+
+    public CompletableFuture<Boolean> deleteTrack(long trackId) {
+        return submit(() -> App.deleteTrack(trackId));
+    }
+
+    /**
+     * Applies the changes other processes made to the database since the last refresh.
+     */
+    public CompletableFuture<Void> refresh() {
+        return submit(() -> {
+            App.refresh();
+            return null;
+        });
+    }
+
+    /**
+     * Stops accepting requests and waits up to a minute for the running ones
+     * to finish. If the waiting thread is interrupted, the running requests
+     * are interrupted too and the thread's interrupt status is kept.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return request.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+}
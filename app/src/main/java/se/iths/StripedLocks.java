@@ -0,0 +1,25 @@
+package se.iths;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by id. Two ids may map to the same lock, which only
+ * costs some concurrency, while memory use stays constant however many ids are locked.
+ */
+class StripedLocks {
+    private final Lock[] locks;
+
+    StripedLocks(int stripes) {
+        locks = new Lock[Integer.highestOneBit(Math.max(1, stripes - 1) << 1)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    Lock get(long id) {
+        int hash = Long.hashCode(id);
+        hash ^= hash >>> 16;
+        return locks[hash & (locks.length - 1)];
+    }
+}
@@ -0,0 +1,145 @@
+package se.iths.persistency;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the calls of a blocking DAO on an executor. At most maxConcurrent calls
+ * run against the DAO at once, so one busy DAO can't take every pooled
+ * connection. The rest wait in a queue and are handed to the executor as
+ * permits free up, so a waiting call holds no thread, whatever the executor.
+ * Failures complete the future with a {@link CompletionException} wrapping the
+ * SQLException.
+ */
+public class AsyncCRUD<T> implements AsyncCRUDInterface<T> {
+    // Same as the connection pool's default maximum size
+    public static final int DEFAULT_MAX_CONCURRENT = 10;
+    private static final Executor DEFAULT_EXECUTOR = newPerTaskExecutor();
+    private final CRUDInterface<T> dao;
+    private final Executor executor;
+    private final Semaphore permits;
+    private final Queue<Task<?>> waiting = new ConcurrentLinkedQueue<>();
+
+    public interface Call<R> {
+        R call() throws Exception;
+    }
+
+    public AsyncCRUD(CRUDInterface<T> dao, Executor executor, int maxConcurrent) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        this.dao = dao;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public AsyncCRUD(CRUDInterface<T> dao) {
+        this(dao, DEFAULT_EXECUTOR, DEFAULT_MAX_CONCURRENT);
+    }
+
+    @Override
+    public CompletableFuture<Collection<T>> findAll() {
+        return supply(dao::findAll);
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> findById(long id) {
+        return supply(() -> dao.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> create(T object) {
+        return supply(() -> dao.create(object));
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> update(T object) {
+        return supply(() -> dao.update(object));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delete(T object) {
+        return supply(() -> dao.delete(object));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteById(long id) {
+        return supply(() -> dao.deleteById(id));
+    }
+
+    /**
+     * Runs any other blocking call, e.g. a DAO specific finder, under the same
+     * concurrency limit.
+     */
+    public <R> CompletableFuture<R> supply(Call<R> call) {
+        Task<R> task = new Task<>(call);
+        waiting.add(task);
+        dispatch();
+        return task.future;
+    }
+
+    // Runs on the caller and on every finishing call. A call queued while all
+    // permits are taken is picked up by the release that follows.
+    private void dispatch() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Task<?> task = waiting.poll();
+            if (task == null) {
+                permits.release();
+                continue;
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                task.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private class Task<R> implements Runnable {
+        final Call<R> call;
+        final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Task(Call<R> call) {
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(call.call());
+            } catch (Exception e) {
+                future.completeExceptionally(new CompletionException(e));
+            } finally {
+                permits.release();
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * One virtual thread per task when the runtime has them, looked up
+     * reflectively so the code still builds and runs on Java 17. Otherwise,
+     * e.g. on Java 17, a cached pool of daemon threads. That pool has no
+     * bound of its own, but an AsyncCRUD only hands it maxConcurrent calls at
+     * a time.
+     */
+    public static ExecutorService newPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "async-dao");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
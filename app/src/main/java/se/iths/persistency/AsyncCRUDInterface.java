@@ -0,0 +1,14 @@
+package se.iths.persistency;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncCRUDInterface<T> {
+    public CompletableFuture<Collection<T>> findAll();
+    public CompletableFuture<Optional<T>> findById(long id);
+    public CompletableFuture<Optional<T>> create(T object);
+    public CompletableFuture<Optional<T>> update(T object);
+    public CompletableFuture<Boolean> delete(T object);
+    public CompletableFuture<Boolean> deleteById(long id);
+}
@@ -0,0 +1,85 @@
+package se.iths.persistency;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a createAll/updateAll/deleteAll call. The objects are written in
+ * batches that each commit on their own, so a failing batch does not undo the
+ * ones before it and the ones after it are still attempted.
+ */
+public class BatchResult<T> {
+    private final List<T> succeeded = new ArrayList<>();
+    private final List<Failure<T>> failures = new ArrayList<>();
+    private int affectedRows;
+
+    public void addSucceeded(List<T> batch, int affectedRows) {
+        succeeded.addAll(batch);
+        this.affectedRows += affectedRows;
+    }
+
+    public void addFailure(int batchIndex, List<T> batch, SQLException cause) {
+        failures.add(new Failure<>(batchIndex, new ArrayList<>(batch), cause));
+    }
+
+    /**
+     * Objects in batches that were executed without error, in the order given.
+     */
+    public List<T> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    public List<Failure<T>> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public int getAffectedRows() {
+        return affectedRows;
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    public static class Failure<T> {
+        private final int batchIndex;
+        private final List<T> batch;
+        private final SQLException cause;
+
+        Failure(int batchIndex, List<T> batch, SQLException cause) {
+            this.batchIndex = batchIndex;
+            this.batch = batch;
+            this.cause = cause;
+        }
+
+        /**
+         * Zero based index of the failed batch.
+         */
+        public int getBatchIndex() {
+            return batchIndex;
+        }
+
+        public List<T> getBatch() {
+            return batch;
+        }
+
+        public SQLException getCause() {
+            return cause;
+        }
+
+        /**
+         * Per statement update counts reported by the driver, empty if the
+         * batch failed before the driver could report any.
+         */
+        public int[] getUpdateCounts() {
+            if (cause instanceof BatchUpdateException) {
+                int[] counts = ((BatchUpdateException) cause).getUpdateCounts();
+                if (counts != null) return counts;
+            }
+            return new int[0];
+        }
+    }
+}
@@ -3,11 +3,17 @@ package se.iths.persistency;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CRUDInterface<T> {
     public Collection<T> findAll() throws SQLException;
+    public Stream<T> streamAll() throws SQLException;
     public Optional<T> findById(long id) throws SQLException;
     public Optional<T> create(T object) throws SQLException;
     public Optional<T> update(T object) throws SQLException;
     public boolean delete( T object) throws Exception;
+    public boolean deleteById(long id) throws SQLException;
+    public BatchResult<T> createAll(Collection<T> objects) throws SQLException;
+    public BatchResult<T> updateAll(Collection<T> objects) throws SQLException;
+    public BatchResult<T> deleteAll(Collection<T> objects) throws SQLException;
 }
@@ -1,15 +1,24 @@
 package se.iths.persistency;
 
+import se.iths.persistency.metrics.Metrics;
+
 import java.sql.*;
 
 public class ConnectionHandler {
-    private static final String JDBC_CONNECTION = "jdbc:mysql://localhost:3306/Chinook";
+    private static final String JDBC_CONNECTION = "jdbc:mysql://localhost:3306/Chinook?useServerPrepStmts=true&rewriteBatchedStatements=true&useCursorFetch=true";
     private static final String JDBC_USER = "iths";
     private static final String JDBC_PASSWORD = "iths";
     public static Connection con = null;
+    private static volatile ConnectionPool pool = null;
+    // Transaction the current thread runs in, see TransactionTemplate
+    private static final ThreadLocal<TransactionContext> transaction = new ThreadLocal<>();
 
+    /**
+     * Hands a borrowed connection back, unless it belongs to the current
+     * thread's transaction, which keeps it until the transaction ends.
+     */
     public static void close(Connection con){
-        if (con == null) return;
+        if (con == null || isTransactionConnection(con)) return;
         try {
             con.close();
         } catch (SQLException ignore) {}
@@ -28,7 +37,98 @@ public class ConnectionHandler {
             stmt.close();
         } catch (SQLException ignore) {}
     }
+
+    /**
+     * Borrows a connection from the pool, closing it hands it back. Inside a
+     * transaction every call returns the transaction's connection instead.
+     */
     public static Connection connect() throws SQLException {
-        return DriverManager.getConnection(JDBC_CONNECTION, JDBC_USER, JDBC_PASSWORD);
+        TransactionContext current = transaction.get();
+        if (current != null) return current.getConnection();
+        if (!Metrics.isEnabled()) return pool().getConnection();
+        long start = System.nanoTime();
+        try {
+            Connection connection = pool().getConnection();
+            Metrics.connectionAcquired(System.nanoTime() - start, null);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            Metrics.connectionAcquired(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the pool, e.g. to point the DAOs at another database or change
+     * its size. Connections borrowed from the old pool are closed when returned.
+     */
+    public static synchronized void configure(PoolConfig config) {
+        ConnectionPool old = pool;
+        pool = new ConnectionPool(config);
+        if (old != null) old.close();
+    }
+
+    /**
+     * True when the current thread runs in a {@link TransactionTemplate}
+     * transaction, so DAOs must leave committing to it.
+     */
+    public static boolean inTransaction() {
+        return transaction.get() != null;
+    }
+
+    /**
+     * Makes the current thread's transaction roll back when it ends, for a
+     * write that failed half way. Does nothing outside a transaction.
+     */
+    public static void setRollbackOnly() {
+        TransactionContext current = transaction.get();
+        if (current != null) current.setRollbackOnly();
+    }
+
+    /**
+     * Runs the action once the current thread's transaction commits, or at
+     * once outside a transaction.
+     */
+    public static void afterCommit(Runnable action) {
+        TransactionContext current = transaction.get();
+        if (current != null) current.afterCommit(action);
+        else action.run();
+    }
+
+    static TransactionContext currentTransaction() {
+        return transaction.get();
+    }
+
+    static void bind(TransactionContext context) {
+        transaction.set(context);
+    }
+
+    static void unbind() {
+        transaction.remove();
+    }
+
+    private static boolean isTransactionConnection(Connection con) {
+        TransactionContext current = transaction.get();
+        return current != null && current.getConnection() == con;
+    }
+
+    public static PoolMetrics metrics() {
+        return pool().getMetrics();
+    }
+
+    public static synchronized void shutdown() {
+        if (pool == null) return;
+        pool.close();
+        pool = null;
+    }
+
+    private static ConnectionPool pool() {
+        ConnectionPool current = pool;
+        if (current != null) return current;
+        synchronized (ConnectionHandler.class) {
+            if (pool == null) {
+                pool = new ConnectionPool(new PoolConfig(JDBC_CONNECTION, JDBC_USER, JDBC_PASSWORD));
+            }
+            return pool;
+        }
     }
 }
@@ -0,0 +1,282 @@
+package se.iths.persistency;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of JDBC connections.
+ *
+ * Idle connections are handed out most recently used first, so the ones at the
+ * tail of the idle queue are the ones the housekeeper evicts after
+ * {@link PoolConfig#getIdleTimeoutMillis()}. A connection that has been idle for
+ * a while is validated before it is borrowed. Borrowers that keep a connection
+ * longer than the leak detection threshold are reported on stderr together with
+ * the stack trace of the borrow, and statements still open when a connection is
+ * returned are closed and counted as leaks.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAX_HOUSEKEEPING_PERIOD_MILLIS = 30_000;
+
+    private final PoolConfig config;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final LatencyHistogram acquireTimes = new LatencyHistogram();
+    private final LongAdder acquireTimeouts = new LongAdder();
+    private final LongAdder leaksDetected = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+    private final ScheduledExecutorService housekeeper;
+    private int total;
+    private int waiters;
+    private boolean closed;
+
+    public ConnectionPool(PoolConfig config) {
+        if (config.getMaxSize() < 1 || config.getMinSize() < 0 || config.getMinSize() > config.getMaxSize()) {
+            throw new IllegalArgumentException("Pool size must satisfy 0 <= min <= max and max >= 1");
+        }
+        this.config = config;
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.min(MAX_HOUSEKEEPING_PERIOD_MILLIS, Math.max(1L, config.getIdleTimeoutMillis() / 2));
+        if (config.getLeakDetectionThresholdMillis() > 0) {
+            period = Math.min(period, Math.max(1L, config.getLeakDetectionThresholdMillis() / 2));
+        }
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, 0L, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(config.getAcquireTimeoutMillis());
+        while (true) {
+            PooledConnection pooled = take(deadline);
+            if (pooled == null) {
+                pooled = open();
+            } else if (System.nanoTime() - pooled.getLastUsedNanos() > VALIDATION_BYPASS_NANOS
+                    && !pooled.validate(config.getValidationTimeoutSeconds())) {
+                discard(pooled);
+                continue;
+            }
+            borrowed.add(pooled);
+            acquireTimes.record(System.nanoTime() - start);
+            return pooled.lease(config.getLeakDetectionThresholdMillis() > 0);
+        }
+    }
+
+    public PoolMetrics getMetrics() {
+        lock.lock();
+        try {
+            return new PoolMetrics(total - idle.size(), idle.size(), total, waiters,
+                    acquireTimeouts.sum(), leaksDetected.sum(), acquireTimes.snapshot(),
+                    statementCacheHits.sum(), statementCacheMisses.sum(), statementCacheEvictions.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        housekeeper.shutdownNow();
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        toClose.forEach(PooledConnection::closePhysical);
+    }
+
+    /**
+     * Called by the connection proxy when the borrower closes it.
+     */
+    void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            int leaked = pooled.reset();
+            if (leaked > 0) {
+                leaksDetected.add(leaked);
+                System.err.printf("Connection returned to pool with %d unclosed statement(s)%n", leaked);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+            return;
+        }
+        lock.lock();
+        try {
+            if (!closed) {
+                idle.addFirst(pooled);
+                available.signal();
+                return;
+            }
+            total--;
+        } finally {
+            lock.unlock();
+        }
+        pooled.closePhysical();
+    }
+
+    /**
+     * Returns an idle connection, or null when the caller has reserved a slot
+     * and should open a new one.
+     */
+    private PooledConnection take(long deadline) throws SQLException {
+        lock.lock();
+        try {
+            while (!closed && idle.isEmpty() && total >= config.getMaxSize()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    acquireTimeouts.increment();
+                    throw new SQLTimeoutException(String.format(
+                            "No connection available within %d ms (active=%d, max=%d)",
+                            config.getAcquireTimeoutMillis(), total - idle.size(), config.getMaxSize()));
+                }
+                waiters++;
+                try {
+                    available.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection", e);
+                } finally {
+                    waiters--;
+                }
+            }
+            if (closed) throw new SQLException("Connection pool is closed");
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled == null) total++;
+            return pooled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        try {
+            Connection physical = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+            StatementCache statementCache = config.getStatementCacheSize() > 0
+                    ? new StatementCache(physical, config.getStatementCacheSize(),
+                            statementCacheHits, statementCacheMisses, statementCacheEvictions)
+                    : null;
+            return new PooledConnection(this, physical, statementCache);
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                total--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        pooled.closePhysical();
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void houseKeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            System.err.printf("Connection pool housekeeping failed %s%n", e);
+        }
+    }
+
+    private void evictIdle() {
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        List<PooledConnection> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && total > config.getMinSize()) {
+                PooledConnection pooled = oldestFirst.next();
+                if (System.nanoTime() - pooled.getLastUsedNanos() < idleTimeout) break;
+                oldestFirst.remove();
+                total--;
+                evicted.add(pooled);
+            }
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(PooledConnection::closePhysical);
+    }
+
+    private void fillToMinimum() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || total >= config.getMinSize()) return;
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            PooledConnection pooled;
+            try {
+                pooled = open();
+            } catch (SQLException e) {
+                return;
+            }
+            lock.lock();
+            try {
+                if (!closed) {
+                    idle.addLast(pooled);
+                    available.signal();
+                    continue;
+                }
+                total--;
+            } finally {
+                lock.unlock();
+            }
+            pooled.closePhysical();
+            return;
+        }
+    }
+
+    private void detectLeaks() {
+        long threshold = TimeUnit.MILLISECONDS.toNanos(config.getLeakDetectionThresholdMillis());
+        if (threshold <= 0L) return;
+        long now = System.nanoTime();
+        for (PooledConnection pooled : borrowed) {
+            if (now - pooled.getBorrowedAtNanos() > threshold && pooled.markLeakReported()) {
+                leaksDetected.increment();
+                System.err.printf("Possible connection leak, connection held for more than %d ms%n",
+                        config.getLeakDetectionThresholdMillis());
+                if (pooled.getBorrowTrace() != null) pooled.getBorrowTrace().printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package se.iths.persistency;
+
+/**
+ * How much of an artist's tree a lookup loads up front. Whatever is left out
+ * is loaded from the database the first time it is accessed.
+ */
+public enum FetchPlan {
+    /** Only the artist row, one query. Albums and tracks are loaded lazily. */
+    ARTIST_ONLY,
+    /** The artist and its albums. Tracks are loaded lazily. */
+    WITH_ALBUMS,
+    /** The whole tree in one joined query. */
+    DEEP
+}
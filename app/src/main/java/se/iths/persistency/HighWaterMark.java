@@ -0,0 +1,71 @@
+package se.iths.persistency;
+
+/**
+ * How far the catalog tables have come: the highest id of Artist, Album and
+ * Track, and the id of the last logged change. A new row raises a max id,
+ * and updates and deletes are logged to CatalogChange, so two equal marks
+ * mean the catalog didn't change in between. Rows above an older mark's ids
+ * and changes after its change id are what changed since. Each part is read
+ * from a primary key index, so reading a mark costs the same however large
+ * the catalog is.
+ * <p>
+ * Ids are handed out when a row is inserted, not when it commits. A
+ * transaction that inserts a row and commits after another one with a higher
+ * id was read into a mark is missed by every later comparison. The same holds
+ * for change ids, so a long transaction racing a refresh can leave a change
+ * unapplied until the catalog is loaded again. The mark also assumes ids
+ * never go down, so CatalogChange must not be pruned while readers keep
+ * marks, or its max id falls back and a stale mark looks current.
+ */
+public class HighWaterMark {
+    private final long maxArtistId;
+    private final long maxAlbumId;
+    private final long maxTrackId;
+    private final long lastChangeId;
+
+    public HighWaterMark(long maxArtistId, long maxAlbumId, long maxTrackId, long lastChangeId) {
+        this.maxArtistId = maxArtistId;
+        this.maxAlbumId = maxAlbumId;
+        this.maxTrackId = maxTrackId;
+        this.lastChangeId = lastChangeId;
+    }
+
+    public long getMaxArtistId() {
+        return maxArtistId;
+    }
+
+    public long getMaxAlbumId() {
+        return maxAlbumId;
+    }
+
+    public long getMaxTrackId() {
+        return maxTrackId;
+    }
+
+    public long getLastChangeId() {
+        return lastChangeId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HighWaterMark)) return false;
+        HighWaterMark other = (HighWaterMark) o;
+        return maxArtistId == other.maxArtistId && maxAlbumId == other.maxAlbumId && maxTrackId == other.maxTrackId
+                && lastChangeId == other.lastChangeId;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = maxArtistId;
+        hash = 31 * hash + maxAlbumId;
+        hash = 31 * hash + maxTrackId;
+        hash = 31 * hash + lastChangeId;
+        return Long.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("artists=%d albums=%d tracks=%d change=%d", maxArtistId, maxAlbumId, maxTrackId, lastChangeId);
+    }
+}
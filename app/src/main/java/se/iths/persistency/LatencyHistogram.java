@@ -0,0 +1,43 @@
+package se.iths.persistency;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with power of two microsecond buckets. Bucket i counts
+ * samples below 2^i microseconds, the last bucket takes everything above.
+ */
+public class LatencyHistogram {
+    public static final int BUCKETS = 32;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        long micros = Math.max(0L, nanos / 1_000L);
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        counts.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+    }
+
+    public long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Upper bound in microseconds of the bucket holding the given percentile
+     * (0-100) of the snapshot, or 0 if nothing has been recorded.
+     */
+    public static long percentileMicros(long[] snapshot, double percentile) {
+        long total = 0L;
+        for (long count : snapshot) total += count;
+        if (total == 0L) return 0L;
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0L;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return 1L << i;
+        }
+        return 1L << (snapshot.length - 1);
+    }
+}
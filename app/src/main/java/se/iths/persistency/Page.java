@@ -0,0 +1,59 @@
+package se.iths.persistency;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset paginated query. The next page is requested with the
+ * continuation token, which encodes the id of this page's last row, so every
+ * page is an index range scan no matter how deep into the table it is.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final long lastId;
+    private final boolean hasNext;
+
+    public Page(List<T> items, long lastId, boolean hasNext) {
+        this.items = Collections.unmodifiableList(items);
+        this.lastId = lastId;
+        this.hasNext = hasNext;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * Id to pass as afterId for the next page.
+     */
+    public long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * Opaque token for the next page, or null if this is the last one.
+     */
+    public String getContinuationToken() {
+        if (!hasNext) return null;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a continuation token into the afterId it stands for. A null
+     * token means the first page.
+     */
+    public static long afterId(String continuationToken) {
+        if (continuationToken == null || continuationToken.isEmpty()) return 0L;
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + continuationToken, e);
+        }
+    }
+}
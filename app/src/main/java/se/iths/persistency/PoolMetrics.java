@@ -0,0 +1,92 @@
+package se.iths.persistency;
+
+/**
+ * Point in time view of a {@link ConnectionPool}.
+ */
+public class PoolMetrics {
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int waiters;
+    private final long acquireTimeouts;
+    private final long leaksDetected;
+    private final long[] acquireTimeBuckets;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+    private final long statementCacheEvictions;
+
+    PoolMetrics(int active, int idle, int total, int waiters, long acquireTimeouts, long leaksDetected, long[] acquireTimeBuckets,
+                long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.waiters = waiters;
+        this.acquireTimeouts = acquireTimeouts;
+        this.leaksDetected = leaksDetected;
+        this.acquireTimeBuckets = acquireTimeBuckets;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+        this.statementCacheEvictions = statementCacheEvictions;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getWaiters() {
+        return waiters;
+    }
+
+    public long getAcquireTimeouts() {
+        return acquireTimeouts;
+    }
+
+    public long getLeaksDetected() {
+        return leaksDetected;
+    }
+
+    /**
+     * Acquire time histogram, see {@link LatencyHistogram} for the bucket layout.
+     */
+    public long[] getAcquireTimeBuckets() {
+        return acquireTimeBuckets.clone();
+    }
+
+    public long getAcquireCount() {
+        long count = 0L;
+        for (long bucket : acquireTimeBuckets) count += bucket;
+        return count;
+    }
+
+    public long getAcquireTimeMicros(double percentile) {
+        return LatencyHistogram.percentileMicros(acquireTimeBuckets, percentile);
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    public long getStatementCacheEvictions() {
+        return statementCacheEvictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d total=%d waiters=%d acquired=%d p50<%dus p99<%dus timeouts=%d leaks=%d"
+                        + " stmtCacheHits=%d stmtCacheMisses=%d stmtCacheEvictions=%d",
+                active, idle, total, waiters, getAcquireCount(), getAcquireTimeMicros(50), getAcquireTimeMicros(99),
+                acquireTimeouts, leaksDetected, statementCacheHits, statementCacheMisses, statementCacheEvictions);
+    }
+}
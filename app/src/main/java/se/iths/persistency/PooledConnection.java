@@ -0,0 +1,163 @@
+package se.iths.persistency;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A physical connection owned by a {@link ConnectionPool}. Callers never see it
+ * directly, every borrow hands out a fresh proxy whose close() returns the
+ * connection to the pool instead of closing it. Plain prepareStatement calls
+ * go through the connection's {@link StatementCache} when the pool has one.
+ */
+class PooledConnection {
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private final List<Statement> openStatements = new ArrayList<>();
+    private volatile long lastUsedNanos = System.nanoTime();
+    private volatile long borrowedAtNanos;
+    private volatile Throwable borrowTrace;
+    private volatile boolean leakReported;
+
+    PooledConnection(ConnectionPool pool, Connection physical, StatementCache statementCache) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCache;
+    }
+
+    Connection lease(boolean traceBorrower) {
+        borrowedAtNanos = System.nanoTime();
+        borrowTrace = traceBorrower ? new Throwable("Connection borrowed here") : null;
+        leakReported = false;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Lease());
+    }
+
+    boolean validate(int timeoutSeconds) {
+        try {
+            return physical.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes statements the borrower forgot about, which also closes their
+     * result sets, and restores the connection to its pooled state.
+     * Returns the number of leaked statements.
+     */
+    int reset() throws SQLException {
+        int leaked = 0;
+        synchronized (openStatements) {
+            for (Statement stmt : openStatements) {
+                if (!stmt.isClosed()) {
+                    leaked++;
+                    ConnectionHandler.close(stmt);
+                }
+            }
+            openStatements.clear();
+        }
+        if (!physical.getAutoCommit()) {
+            physical.rollback();
+            physical.setAutoCommit(true);
+        }
+        lastUsedNanos = System.nanoTime();
+        return leaked;
+    }
+
+    void closePhysical() {
+        if (statementCache != null) statementCache.clear();
+        ConnectionHandler.close(physical);
+    }
+
+    long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    long getBorrowedAtNanos() {
+        return borrowedAtNanos;
+    }
+
+    Throwable getBorrowTrace() {
+        return borrowTrace;
+    }
+
+    boolean markLeakReported() {
+        if (leakReported) return false;
+        leakReported = true;
+        return true;
+    }
+
+    private void track(Statement stmt) {
+        synchronized (openStatements) {
+            openStatements.removeIf(this::isClosedQuietly);
+            openStatements.add(stmt);
+        }
+    }
+
+    private boolean isClosedQuietly(Statement stmt) {
+        try {
+            return stmt.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static boolean isCacheablePrepare(Method method, Object[] args) {
+        if (!method.getName().equals("prepareStatement")) return false;
+        Class<?>[] types = method.getParameterTypes();
+        return types.length == 1 || (types.length == 2 && types[1] == int.class);
+    }
+
+    private class Lease implements InvocationHandler {
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (statementCache != null && isCacheablePrepare(method, args)) {
+                boolean generatedKeys = args.length == 2 && (Integer) args[1] == Statement.RETURN_GENERATED_KEYS;
+                PreparedStatement stmt = statementCache.prepare((Connection) proxy, (String) args[0], generatedKeys);
+                track(stmt);
+                return stmt;
+            }
+            try {
+                Object result = method.invoke(physical, args);
+                if (result instanceof Statement) {
+                    track((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
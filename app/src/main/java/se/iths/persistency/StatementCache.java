@@ -0,0 +1,141 @@
+package se.iths.persistency;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL.
+ *
+ * A cached statement is checked out while it is in use, so two callers on the
+ * same connection never share one. Closing the handle returned by
+ * {@link #prepare} clears its parameters and puts it back instead of closing
+ * it, the driver only sees a real close when the statement is evicted.
+ */
+class StatementCache {
+    private static final String GENERATED_KEYS_PREFIX = "RETURN_GENERATED_KEYS:";
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    /**
+     * Returns a statement for the sql, prepared with generated keys if asked for.
+     * The returned handle reports {@code owner} as its connection.
+     */
+    PreparedStatement prepare(Connection owner, String sql, boolean generatedKeys) throws SQLException {
+        String key = generatedKeys ? GENERATED_KEYS_PREFIX + sql : sql;
+        PreparedStatement stmt;
+        synchronized (statements) {
+            stmt = statements.remove(key);
+        }
+        if (stmt != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            stmt = generatedKeys
+                    ? physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : physical.prepareStatement(sql);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Handle(owner, key, stmt));
+    }
+
+    void clear() {
+        synchronized (statements) {
+            statements.values().forEach(ConnectionHandler::close);
+            statements.clear();
+        }
+    }
+
+    private void checkIn(String key, PreparedStatement stmt) {
+        try {
+            ResultSet rs = stmt.getResultSet();
+            if (rs != null) rs.close();
+            stmt.clearParameters();
+            stmt.clearBatch();
+        } catch (SQLException e) {
+            ConnectionHandler.close(stmt);
+            return;
+        }
+        synchronized (statements) {
+            if (statements.containsKey(key)) {
+                ConnectionHandler.close(stmt);
+                return;
+            }
+            statements.put(key, stmt);
+            Iterator<Map.Entry<String, PreparedStatement>> leastRecentlyUsed = statements.entrySet().iterator();
+            while (statements.size() > maxSize) {
+                ConnectionHandler.close(leastRecentlyUsed.next().getValue());
+                leastRecentlyUsed.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private class Handle implements InvocationHandler {
+        private final Connection owner;
+        private final String key;
+        private final PreparedStatement stmt;
+        private boolean closed;
+
+        Handle(Connection owner, String key, PreparedStatement stmt) {
+            this.owner = owner;
+            this.key = key;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        checkIn(key, stmt);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || stmt.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + stmt;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(stmt, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
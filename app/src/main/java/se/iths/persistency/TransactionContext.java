@@ -0,0 +1,47 @@
+package se.iths.persistency;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The transaction a {@link TransactionTemplate} callback runs in. DAO calls
+ * made by the callback's thread use its connection.
+ */
+public class TransactionContext {
+    private final Connection connection;
+    private boolean rollbackOnly;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+
+    TransactionContext(Connection connection) {
+        this.connection = connection;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Rolls the transaction back when the callback returns, instead of
+     * committing it.
+     */
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    /**
+     * Runs the action once the transaction has committed, and not at all if
+     * it rolls back.
+     */
+    public void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    void committed() {
+        afterCommit.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,119 @@
+package se.iths.persistency;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Runs a callback in one database transaction. The connection is bound to
+ * the calling thread, so every DAO call the callback makes shares it and
+ * nothing is committed until the callback returns. An exception thrown by
+ * the callback rolls everything back, and so does
+ * {@link TransactionContext#setRollbackOnly()}.
+ * <p>
+ * A callback that starts another transaction joins the one it runs in, with
+ * that transaction's isolation and read-only setting. When the inner
+ * callback fails the whole transaction is rolled back, even if the outer
+ * one catches the exception. Inside a transaction the batches of
+ * createAll/updateAll/deleteAll no longer commit on their own, and a failed
+ * batch is thrown instead of reported in the BatchResult, and rolls the
+ * transaction back too.
+ */
+public class TransactionTemplate {
+    // Leaves the connection's isolation level alone
+    public static final int ISOLATION_DEFAULT = -1;
+    private int isolation = ISOLATION_DEFAULT;
+    private boolean readOnly;
+
+    public interface Callback<R> {
+        R doInTransaction(TransactionContext context) throws SQLException;
+    }
+
+    /**
+     * Runs the callback in a transaction with the connection's default
+     * isolation level.
+     */
+    public static <R> R inTransaction(Callback<R> callback) throws SQLException {
+        return new TransactionTemplate().execute(callback);
+    }
+
+    public <R> R execute(Callback<R> callback) throws SQLException {
+        TransactionContext joined = ConnectionHandler.currentTransaction();
+        if (joined != null) {
+            try {
+                return callback.doInTransaction(joined);
+            } catch (Throwable e) {
+                joined.setRollbackOnly();
+                throw e;
+            }
+        }
+
+        Connection con = ConnectionHandler.connect();
+        TransactionContext context = new TransactionContext(con);
+        int previousIsolation = ISOLATION_DEFAULT;
+        try {
+            if (isolation != ISOLATION_DEFAULT) {
+                previousIsolation = con.getTransactionIsolation();
+                con.setTransactionIsolation(isolation);
+            }
+            if (readOnly) con.setReadOnly(true);
+            con.setAutoCommit(false);
+            ConnectionHandler.bind(context);
+            R result = callback.doInTransaction(context);
+            if (context.isRollbackOnly()) {
+                con.rollback();
+            } else {
+                con.commit();
+                context.committed();
+            }
+            return result;
+        } catch (Throwable e) {
+            rollback(con, e);
+            throw e;
+        } finally {
+            ConnectionHandler.unbind();
+            restore(con, previousIsolation);
+            ConnectionHandler.close(con);
+        }
+    }
+
+    public int getIsolation() {
+        return isolation;
+    }
+
+    /**
+     * One of the {@link Connection} TRANSACTION_ constants, or
+     * {@link #ISOLATION_DEFAULT}.
+     */
+    public void setIsolation(int isolation) {
+        this.isolation = isolation;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Tells the driver the transaction only reads, which lets the server
+     * skip setting up for writes. Writes may fail.
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    private static void rollback(Connection con, Throwable cause) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    // Switching autoCommit back on would commit, so it is done after commit or rollback
+    private void restore(Connection con, int previousIsolation) {
+        try {
+            con.setAutoCommit(true);
+            if (readOnly) con.setReadOnly(false);
+            if (previousIsolation != ISOLATION_DEFAULT) con.setTransactionIsolation(previousIsolation);
+        } catch (SQLException ignore) {}
+    }
+}
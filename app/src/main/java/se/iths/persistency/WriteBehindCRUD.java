@@ -0,0 +1,364 @@
+package se.iths.persistency;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind buffer in front of a DAO. update only puts the object in a
+ * buffer keyed by id, where a later update of the same id replaces the
+ * earlier one, and a background thread writes the buffer with the DAO's
+ * updateAll when it holds flushSize objects or flushInterval has passed.
+ * When the buffer holds capacity ids, updating another id waits until a
+ * flush makes room.
+ * <p>
+ * findById answers buffered ids from the buffer, and findAll and streamAll
+ * flush first, so this process reads its own writes. Other processes see
+ * them once flushed. Creates and deletes are written at once, deletes drop
+ * buffered updates of the same ids. Each flush writes in one
+ * {@link TransactionTemplate} transaction, so it commits or rolls back as a
+ * whole. A flush that fails leaves its updates in the buffer, where newer
+ * updates of the same ids still replace them, and the next flush retries
+ * them. The background thread waits a whole flushInterval before retrying.
+ * The failure is thrown by the next {@link #flush()} or {@link #close()}
+ * unless a later flush wrote the buffer. The remaining updates are flushed by
+ * close, or by a shutdown hook if the JVM exits first.
+ */
+public class WriteBehindCRUD<T> implements CRUDInterface<T>, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 10_000;
+    // Same as the DAOs' default batch size
+    public static final int DEFAULT_FLUSH_SIZE = 500;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+    private final CRUDInterface<T> dao;
+    private final ToLongFunction<T> idOf;
+    private final int capacity;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    // Guards pending, closed and failure
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushNeeded = lock.newCondition();
+    // Only one flush writes at a time, so a newer update is never overtaken by an older one
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Map<Long, Pending<T>> pending = new LinkedHashMap<>();
+    private final Thread flusher;
+    private final Thread shutdownHook;
+    private boolean closed;
+    private SQLException failure;
+    private long updates;
+    private long written;
+
+    public WriteBehindCRUD(CRUDInterface<T> dao, ToLongFunction<T> idOf, int capacity, int flushSize, Duration flushInterval) {
+        if (flushSize < 1) throw new IllegalArgumentException("flushSize must be at least 1");
+        if (capacity < flushSize) throw new IllegalArgumentException("capacity must be at least flushSize");
+        if (flushInterval.isNegative() || flushInterval.isZero()) throw new IllegalArgumentException("flushInterval must be positive");
+        this.dao = dao;
+        this.idOf = idOf;
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.flusher = new Thread(this::flushLoop, "write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        this.shutdownHook = new Thread(this::flushQuietly, "write-behind-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public WriteBehindCRUD(CRUDInterface<T> dao, ToLongFunction<T> idOf) {
+        this(dao, idOf, DEFAULT_CAPACITY, DEFAULT_FLUSH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    @Override
+    public Collection<T> findAll() throws SQLException {
+        flush();
+        return dao.findAll();
+    }
+
+    @Override
+    public Stream<T> streamAll() throws SQLException {
+        flush();
+        return dao.streamAll();
+    }
+
+    @Override
+    public Optional<T> findById(long id) throws SQLException {
+        lock.lock();
+        try {
+            Pending<T> buffered = pending.get(id);
+            if (buffered != null) return Optional.of(buffered.object);
+        } finally {
+            lock.unlock();
+        }
+        return dao.findById(id);
+    }
+
+    @Override
+    public Optional<T> create(T object) throws SQLException {
+        return dao.create(object);
+    }
+
+    /**
+     * Buffers the update and returns without writing it, waiting only when
+     * the buffer is full. Written through at once after close.
+     */
+    @Override
+    public Optional<T> update(T object) throws SQLException {
+        if (!buffer(object)) return dao.update(object);
+        return Optional.of(object);
+    }
+
+    @Override
+    public boolean delete(T object) throws Exception {
+        discard(idOf.applyAsLong(object));
+        return dao.delete(object);
+    }
+
+    @Override
+    public boolean deleteById(long id) throws SQLException {
+        discard(id);
+        return dao.deleteById(id);
+    }
+
+    @Override
+    public BatchResult<T> createAll(Collection<T> objects) throws SQLException {
+        return dao.createAll(objects);
+    }
+
+    /**
+     * Buffers every object like {@link #update(Object)}. The returned result
+     * lists them all as succeeded with zero affected rows, since nothing has
+     * been written yet.
+     */
+    @Override
+    public BatchResult<T> updateAll(Collection<T> objects) throws SQLException {
+        List<T> unbuffered = new ArrayList<>();
+        for (T object : objects) {
+            if (!buffer(object)) unbuffered.add(object);
+        }
+        if (!unbuffered.isEmpty()) return dao.updateAll(unbuffered);
+        BatchResult<T> result = new BatchResult<>();
+        result.addSucceeded(new ArrayList<>(objects), 0);
+        return result;
+    }
+
+    @Override
+    public BatchResult<T> deleteAll(Collection<T> objects) throws SQLException {
+        for (T object : objects) discard(idOf.applyAsLong(object));
+        return dao.deleteAll(objects);
+    }
+
+    /**
+     * Writes everything buffered so far and returns the number of updated
+     * rows. Throws if the write fails, leaving the updates buffered, or if
+     * the background thread's last flush failed and nothing was written
+     * since.
+     */
+    public int flush() throws SQLException {
+        flushLock.lock();
+        try {
+            List<Pending<T>> batch;
+            lock.lock();
+            try {
+                batch = new ArrayList<>(pending.values());
+            } finally {
+                lock.unlock();
+            }
+            BatchResult<T> result = batch.isEmpty() ? new BatchResult<>() : write(batch);
+
+            lock.lock();
+            try {
+                SQLException thrown = failure;
+                failure = null;
+                if (result.isComplete()) {
+                    // An id updated again during the write keeps its newer entry
+                    for (Pending<T> entry : batch) pending.remove(entry.id, entry);
+                    written += result.getAffectedRows();
+                    notFull.signalAll();
+                    // Whatever an earlier flush failed to write went with this one
+                    if (!batch.isEmpty()) thrown = null;
+                } else {
+                    // Nothing was committed, so every update stays buffered for the next flush
+                    thrown = result.getFailures().get(0).getCause();
+                }
+                if (thrown != null) throw thrown;
+            } finally {
+                lock.unlock();
+            }
+            return result.getAffectedRows();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the background thread and flushes what is left. Later updates
+     * are written through at once.
+     */
+    @Override
+    public void close() throws SQLException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            flushNeeded.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is shutting down and the hook flushes anyway
+        }
+        flush();
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of updates accepted into the buffer, including the ones that
+     * replaced an earlier update of the same id.
+     */
+    public long getUpdateCount() {
+        lock.lock();
+        try {
+            return updates;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of rows the flushes have updated in the database.
+     */
+    public long getWrittenCount() {
+        lock.lock();
+        try {
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns false without buffering when the buffer is closed.
+     */
+    private boolean buffer(T object) throws SQLException {
+        long id = idOf.applyAsLong(object);
+        lock.lock();
+        try {
+            while (!closed && pending.size() >= capacity && !pending.containsKey(id)) {
+                flushNeeded.signal();
+                notFull.await();
+            }
+            if (closed) return false;
+            pending.put(id, new Pending<>(id, object));
+            updates++;
+            if (pending.size() >= flushSize) flushNeeded.signal();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for room in the write-behind buffer", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discard(long id) {
+        lock.lock();
+        try {
+            if (pending.remove(id) != null) notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // One transaction, so a DAO that reports failed batches instead of
+    // throwing them can't commit the others either
+    private BatchResult<T> write(List<Pending<T>> batch) {
+        List<T> objects = new ArrayList<>(batch.size());
+        for (Pending<T> entry : batch) objects.add(entry.object);
+        try {
+            return TransactionTemplate.inTransaction(context -> {
+                BatchResult<T> result = dao.updateAll(objects);
+                if (!result.isComplete()) throw result.getFailures().get(0).getCause();
+                return result;
+            });
+        } catch (SQLException e) {
+            BatchResult<T> result = new BatchResult<>();
+            result.addFailure(0, objects, e);
+            return result;
+        }
+    }
+
+    private void flushLoop() {
+        boolean failed = false;
+        while (true) {
+            lock.lock();
+            try {
+                long remaining = flushIntervalNanos;
+                // After a failure a full buffer waits too, instead of retrying in a tight loop
+                while (!closed && (failed || pending.size() < flushSize) && remaining > 0) {
+                    remaining = flushNeeded.awaitNanos(remaining);
+                }
+                if (closed) return;
+                if (pending.isEmpty()) continue;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            failed = !flushInBackground();
+        }
+    }
+
+    // Keeps the failure for the next caller of flush instead of losing it on this thread
+    private boolean flushInBackground() {
+        try {
+            flush();
+            return true;
+        } catch (SQLException e) {
+            lock.lock();
+            try {
+                if (failure == null) failure = e;
+            } finally {
+                lock.unlock();
+            }
+            return false;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.err.printf("Error flushing buffered updates %s%n", e);
+        }
+    }
+
+    private static class Pending<T> {
+        final long id;
+        final T object;
+
+        Pending(long id, T object) {
+            this.id = id;
+            this.object = object;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package se.iths.persistency.cache;
+
+import se.iths.persistency.BatchResult;
+import se.iths.persistency.CRUDInterface;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of a DAO. findById is answered from the cache
+ * when possible, created entities are added to it, and updates and deletes
+ * made through this wrapper invalidate the affected ids. Writes that bypass
+ * the wrapper must call {@link #invalidate(long)} themselves. A lookup that
+ * loads an id while it is being invalidated returns what it loaded but
+ * doesn't cache it.
+ * <p>
+ * Every caller of findById gets the same cached instance. Treat it as read
+ * only: a setter called on it changes what every other caller reads, without
+ * the change being written. Change the entity and pass it to update, which
+ * writes it and drops it from the cache.
+ */
+public class CachingCRUD<T> implements CRUDInterface<T> {
+    private final CRUDInterface<T> dao;
+    private final ToLongFunction<T> idOf;
+    private final EntityCache<T> cache;
+
+    public CachingCRUD(CRUDInterface<T> dao, ToLongFunction<T> idOf, EntityCache<T> cache) {
+        this.dao = dao;
+        this.idOf = idOf;
+        this.cache = cache;
+    }
+
+    @Override
+    public Collection<T> findAll() throws SQLException {
+        return dao.findAll();
+    }
+
+    @Override
+    public Stream<T> streamAll() throws SQLException {
+        return dao.streamAll();
+    }
+
+    @Override
+    public Optional<T> findById(long id) throws SQLException {
+        T cached = cache.get(id);
+        if (cached != null) return Optional.of(cached);
+        long token = cache.startLoad(id);
+        Optional<T> loaded = Optional.empty();
+        try {
+            loaded = dao.findById(id);
+        } finally {
+            cache.finishLoad(id, token, loaded.orElse(null));
+        }
+        return loaded;
+    }
+
+    @Override
+    public Optional<T> create(T object) throws SQLException {
+        Optional<T> created = dao.create(object);
+        created.ifPresent(o -> cache.put(idOf.applyAsLong(o), o));
+        return created;
+    }
+
+    @Override
+    public Optional<T> update(T object) throws SQLException {
+        Optional<T> updated = dao.update(object);
+        cache.invalidate(idOf.applyAsLong(object));
+        return updated;
+    }
+
+    @Override
+    public boolean delete(T object) throws Exception {
+        boolean deleted = dao.delete(object);
+        cache.invalidate(idOf.applyAsLong(object));
+        return deleted;
+    }
+
+    @Override
+    public boolean deleteById(long id) throws SQLException {
+        boolean deleted = dao.deleteById(id);
+        cache.invalidate(id);
+        return deleted;
+    }
+
+    @Override
+    public BatchResult<T> createAll(Collection<T> objects) throws SQLException {
+        return dao.createAll(objects);
+    }
+
+    @Override
+    public BatchResult<T> updateAll(Collection<T> objects) throws SQLException {
+        BatchResult<T> result = dao.updateAll(objects);
+        objects.forEach(object -> cache.invalidate(idOf.applyAsLong(object)));
+        return result;
+    }
+
+    @Override
+    public BatchResult<T> deleteAll(Collection<T> objects) throws SQLException {
+        BatchResult<T> result = dao.deleteAll(objects);
+        objects.forEach(object -> cache.invalidate(idOf.applyAsLong(object)));
+        return result;
+    }
+
+    public void invalidate(long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll(Collection<Long> ids) {
+        ids.forEach(cache::invalidate);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+}
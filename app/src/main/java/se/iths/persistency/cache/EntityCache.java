@@ -0,0 +1,123 @@
+package se.iths.persistency.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size bounded LRU cache of entities keyed by id, with an optional time to live.
+ * A ttl of 0 keeps entries until they are evicted or invalidated.
+ * <p>
+ * A read-through load that races with a write brackets the load with
+ * {@link #startLoad(long)} and {@link #finishLoad(long, long, Object)}, which
+ * drops the loaded value if the id was invalidated in between.
+ */
+public class EntityCache<T> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    // Every start of a load and every invalidation takes the next number
+    private long sequence;
+    private long allInvalidatedAt;
+    // Loads in flight per id, and when an id with loads in flight was last invalidated
+    private final Map<Long, Integer> loading = new HashMap<>();
+    private final Map<Long, Long> invalidatedAt = new HashMap<>();
+
+    public EntityCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize < 1) throw new IllegalArgumentException("Cache size must be at least 1");
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public EntityCache(int maxSize) {
+        this(maxSize, 0L, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the cached entity or null if it is missing or has expired.
+     */
+    public synchronized T get(long id) {
+        Entry<T> entry = entries.get(id);
+        if (entry != null && entry.isExpired(System.nanoTime())) {
+            entries.remove(id);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(long id, T value) {
+        long expiresAt = ttlNanos > 0L ? System.nanoTime() + ttlNanos : 0L;
+        entries.put(id, new Entry<>(value, expiresAt));
+        Iterator<Map.Entry<Long, Entry<T>>> leastRecentlyUsed = entries.entrySet().iterator();
+        while (entries.size() > maxSize) {
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(long id) {
+        entries.remove(id);
+        if (loading.containsKey(id)) invalidatedAt.put(id, ++sequence);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        allInvalidatedAt = ++sequence;
+    }
+
+    /**
+     * Call before loading the entity from the database. Returns the token to
+     * pass to {@link #finishLoad(long, long, Object)}.
+     */
+    public synchronized long startLoad(long id) {
+        loading.merge(id, 1, Integer::sum);
+        return ++sequence;
+    }
+
+    /**
+     * Caches the loaded value unless the id was invalidated since the load
+     * started, when the value may be older than the write that invalidated it.
+     * Pass null when nothing was loaded. Returns true if the value was cached.
+     */
+    public synchronized boolean finishLoad(long id, long token, T value) {
+        boolean stale = allInvalidatedAt > token || invalidatedAt.getOrDefault(id, 0L) > token;
+        if (loading.merge(id, -1, Integer::sum) == 0) {
+            loading.remove(id);
+            invalidatedAt.remove(id);
+        }
+        if (value == null || stale) return false;
+        put(id, value);
+        return true;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, expirations, entries.size());
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long expiresAtNanos;
+
+        Entry(T value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAtNanos != 0L && now - expiresAtNanos >= 0L;
+        }
+    }
+}
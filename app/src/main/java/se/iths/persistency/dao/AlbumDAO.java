@@ -1,142 +1,314 @@
 package se.iths.persistency.dao;
 
+import se.iths.persistency.BatchResult;
 import se.iths.persistency.CRUDInterface;
 import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.Page;
 import se.iths.persistency.model.Album;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class AlbumDAO implements CRUDInterface<Album> {
     private static final String TABLE_NAME = "Album";
     private static final String COL_ID = "AlbumId";
     private static final String COL_ARTIST_ID = "ArtistId";
     private static final String COL_TITLE = "Title";
-    private static final String COL_COUNT = "Count(*)";
     private static final String SQL_SELECT_BY_ID = String.format("SELECT %s, %s FROM %s WHERE %s = ?", COL_TITLE, COL_ARTIST_ID, TABLE_NAME, COL_ID);
     private static final String SQL_SELECT_BY_PARENT_ID = String.format("SELECT %s, %s, %s FROM %s WHERE %S = ?", COL_ID, COL_TITLE, COL_ARTIST_ID, TABLE_NAME, COL_ARTIST_ID);
-    private static final String SQL_SELECT_LAST = String.format("SELECT %s FROM %s ORDER BY %s DESC", COL_ID, TABLE_NAME, COL_ID);
     private static final String SQL_SELECT_ALL = String.format("SELECT %s, %s, %s FROM %s", COL_ID, COL_TITLE, COL_ARTIST_ID, TABLE_NAME);
+    private static final String SQL_SELECT_BY_IDS = String.format("SELECT %s, %s, %s FROM %s WHERE %s IN (", COL_ID, COL_TITLE, COL_ARTIST_ID, TABLE_NAME, COL_ID);
+    private static final String SQL_SELECT_BY_PARENT_IDS = String.format("SELECT %s, %s, %s FROM %s WHERE %s IN (", COL_ID, COL_TITLE, COL_ARTIST_ID, TABLE_NAME, COL_ARTIST_ID);
+    private static final String SQL_ORDER_BY_ID = String.format(") ORDER BY %s", COL_ID);
+    private static final String SQL_SELECT_PAGE = String.format("SELECT %s, %s, %s FROM %s WHERE %s > ? ORDER BY %s LIMIT ?", COL_ID, COL_TITLE, COL_ARTIST_ID, TABLE_NAME, COL_ID, COL_ID);
+    private static final String SQL_SELECT_PAGE_BY_PARENT_ID = String.format("SELECT %s, %s, %s FROM %s WHERE %s = ? AND %s > ? ORDER BY %s LIMIT ?", COL_ID, COL_TITLE, COL_ARTIST_ID, TABLE_NAME, COL_ARTIST_ID, COL_ID, COL_ID);
     private static final String SQL_INSERT = String.format("INSERT INTO %s (%s, %s) VALUES(?, ?)", TABLE_NAME, COL_TITLE, COL_ARTIST_ID);
     private static final String SQL_DELETE = String.format("DELETE FROM %s WHERE %s = ?", TABLE_NAME, COL_ID);
     private static final String SQL_UPDATE = String.format("UPDATE %s SET %s = ? WHERE %s = ?", TABLE_NAME, COL_TITLE, COL_ID);
-    private static final String SQL_COUNT_ROW = String.format("SELECT %s FROM %s", COL_COUNT, TABLE_NAME);
-    Connection con = null;
+    private static final String SQL_SELECT_TRACK_IDS = String.format("SELECT TrackId FROM Track WHERE %s = ?", COL_ID);
+    private static final String SQL_DELETE_PLAYLIST_TRACKS = String.format("DELETE FROM PlaylistTrack WHERE TrackId IN (%s)", SQL_SELECT_TRACK_IDS);
+    private static final String SQL_DELETE_TRACKS = String.format("DELETE FROM Track WHERE %s = ?", COL_ID);
+    private volatile int batchSize = BatchWriter.DEFAULT_BATCH_SIZE;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     @Override
     public Collection<Album> findAll() throws SQLException {
-        con = ConnectionHandler.connect();
+        Connection con = ConnectionHandler.connect();
         Collection<Album> albums = new ArrayList<>();
-        ResultSet rs = con.createStatement().executeQuery(SQL_SELECT_ALL);
         long oldId = -1L;
-        while (rs.next()) {
-            long albumId = rs.getLong(COL_ID);
-            String title = rs.getString(COL_TITLE);
-            long artistId = rs.getLong(COL_ARTIST_ID);
-            if (albumId != oldId) {
-                Album album = new Album(title, artistId);
-                album.setAlbumId(albumId);
-                albums.add(album);
-                oldId = albumId;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = con.createStatement();
+            rs = stmt.executeQuery(SQL_SELECT_ALL);
+            while (rs.next()) {
+                long albumId = rs.getLong(COL_ID);
+                String title = rs.getString(COL_TITLE);
+                long artistId = rs.getLong(COL_ARTIST_ID);
+                if (albumId != oldId) {
+                    Album album = new Album(title, artistId);
+                    album.setAlbumId(albumId);
+                    albums.add(album);
+                    oldId = albumId;
+                }
             }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stmt);
+            ConnectionHandler.close(con);
         }
-        ConnectionHandler.close(rs);
-        ConnectionHandler.close(con);
         return albums;
     }
 
+    @Override
+    public Stream<Album> streamAll() throws SQLException {
+        return ResultStreams.stream(SQL_SELECT_ALL, AlbumDAO::read);
+    }
+
+    /**
+     * Looks up many albums at once, a few IN list queries instead of one query
+     * per id. Ids that don't exist are left out of the map.
+     */
+    public Map<Long, Album> findByIds(Collection<Long> ids) throws SQLException {
+        Map<Long, Album> albums = new LinkedHashMap<>();
+        InLists.query(SQL_SELECT_BY_IDS, SQL_ORDER_BY_ID, ids, stat -> {
+            ResultSet rs = stat.executeQuery();
+            try {
+                while (rs.next()) {
+                    Album album = read(rs);
+                    albums.put(album.getAlbumId(), album);
+                }
+            } finally {
+                ConnectionHandler.close(rs);
+            }
+        });
+        return albums;
+    }
+
+    public Map<Long, Album> findByIds(long... ids) throws SQLException {
+        return findByIds(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * The albums of many artists at once, keyed by artist id. Artists without
+     * albums are left out of the map.
+     */
+    public Map<Long, List<Album>> findByArtistIds(Collection<Long> artistIds) throws SQLException {
+        Map<Long, List<Album>> albums = new LinkedHashMap<>();
+        InLists.query(SQL_SELECT_BY_PARENT_IDS, SQL_ORDER_BY_ID, artistIds, stat -> {
+            ResultSet rs = stat.executeQuery();
+            try {
+                while (rs.next()) {
+                    Album album = read(rs);
+                    albums.computeIfAbsent(album.getArtistId(), id -> new ArrayList<>()).add(album);
+                }
+            } finally {
+                ConnectionHandler.close(rs);
+            }
+        });
+        return albums;
+    }
+
+    /**
+     * Returns up to limit albums with ids above afterId, ordered by id. Pass 0
+     * for the first page and {@link Page#getLastId()} for the following ones.
+     */
+    public Page<Album> findPage(long afterId, int limit) throws SQLException {
+        return Pages.query(SQL_SELECT_PAGE, limit, AlbumDAO::read, Album::getAlbumId, afterId);
+    }
+
+    /**
+     * Like {@link #findPage(long, int)}, restricted to the albums of one artist.
+     */
+    public Page<Album> findPageByParent(long artistId, long afterId, int limit) throws SQLException {
+        return Pages.query(SQL_SELECT_PAGE_BY_PARENT_ID, limit, AlbumDAO::read, Album::getAlbumId, artistId, afterId);
+    }
+
     @Override
     public Optional<Album> findById(long albumId) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_SELECT_BY_ID);
-        stat.setLong(1, albumId);
-        ResultSet rs = stat.executeQuery();
+        Connection con = ConnectionHandler.connect();
         Optional<Album> album = Optional.empty();
-        if(rs.next()) {
-            String title = rs.getString(COL_TITLE);
-            long artistId = rs.getLong(COL_ARTIST_ID);
-            album = Optional.of(new Album(title, artistId));
-            album.get().setAlbumId(albumId);
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_BY_ID);
+            stat.setLong(1, albumId);
+            rs = stat.executeQuery();
+            if(rs.next()) {
+                String title = rs.getString(COL_TITLE);
+                long artistId = rs.getLong(COL_ARTIST_ID);
+                album = Optional.of(new Album(title, artistId));
+                album.get().setAlbumId(albumId);
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
         }
-        ConnectionHandler.close(rs);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
         return album;
     }
 
     public Collection<Album> findByArtistId(long artistId) throws SQLException {
-        con = ConnectionHandler.connect();
+        Connection con = ConnectionHandler.connect();
         Collection<Album> albums = new ArrayList<>();
-        PreparedStatement stat = con.prepareStatement(SQL_SELECT_BY_PARENT_ID);
-        stat.setLong(1, artistId);
-        ResultSet rs = stat.executeQuery();
-        while (rs.next()) {
-            long albumId = rs.getLong(COL_ID);
-            String title = rs.getString(COL_TITLE);
-            Optional<Album> album = Optional.of(new Album(title, artistId));
-            album.get().setAlbumId(albumId);
-            albums.add(album.get());
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_BY_PARENT_ID);
+            stat.setLong(1, artistId);
+            rs = stat.executeQuery();
+            while (rs.next()) {
+                long albumId = rs.getLong(COL_ID);
+                String title = rs.getString(COL_TITLE);
+                Optional<Album> album = Optional.of(new Album(title, artistId));
+                album.get().setAlbumId(albumId);
+                albums.add(album.get());
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
         }
-        ConnectionHandler.close(rs);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
         return albums;
     }
 
     @Override
     public Optional<Album> create(Album album) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_INSERT);
-        String title = album.getTitle();
-        long artistId = album.getArtistId();
-        if (artistId <= 0L) {
+        if (album.getArtistId() <= 0L) {
             throw new RuntimeException("Album can't be created without Artist!");
         }
-        stat.setString(1, title);
-        stat.setLong(2,artistId);
-        stat.execute();
-        stat = con.prepareStatement(SQL_SELECT_LAST);
-        ResultSet rs = stat.executeQuery();
-        rs.next();
-        long newAlbumId = rs.getLong(COL_ID);
-        album.setAlbumId(newAlbumId);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS);
+            bindInsert(stat, album);
+            stat.executeUpdate();
+            rs = stat.getGeneratedKeys();
+            if (!rs.next()) {
+                throw new SQLException("No id generated for Album!");
+            }
+            album.setAlbumId(rs.getLong(1));
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
         return Optional.of(album);
     }
 
+    @Override
+    public BatchResult<Album> createAll(Collection<Album> albums) throws SQLException {
+        for (Album album : albums) {
+            if (album.getArtistId() <= 0L) {
+                throw new RuntimeException("Album can't be created without Artist!");
+            }
+        }
+        return BatchWriter.write(albums, batchSize, (con, batch) ->
+                BatchWriter.executeInsertBatch(con, SQL_INSERT, batch, AlbumDAO::bindInsert, Album::setAlbumId));
+    }
+
     @Override
     public Optional<Album> update(Album album) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_UPDATE);
-        stat.setString(1, album.getTitle());
-        stat.setLong(2, album.getAlbumId());
-        stat.execute();
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        try {
+            stat = con.prepareStatement(SQL_UPDATE);
+            bindUpdate(stat, album);
+            stat.execute();
+        } finally {
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
         return Optional.of(album);
     }
 
+    @Override
+    public BatchResult<Album> updateAll(Collection<Album> albums) throws SQLException {
+        return BatchWriter.write(albums, batchSize, (con, batch) ->
+                BatchWriter.executeBatch(con, SQL_UPDATE, batch, AlbumDAO::bindUpdate));
+    }
+
     @Override
     public boolean delete(Album album) throws SQLException {
-        con = ConnectionHandler.connect();
-        ResultSet rs = con.createStatement().executeQuery(SQL_COUNT_ROW);
-        rs.next();
-        long countBefore = rs.getLong(COL_COUNT);
-
-        PreparedStatement stat = con.prepareStatement(SQL_DELETE);
-        stat.setLong(1, album.getAlbumId());
-        stat.execute();
-
-        rs = con.createStatement().executeQuery(SQL_COUNT_ROW);
-        rs.next();
-        long countAfter = rs.getLong(COL_COUNT);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
-        return countBefore == countAfter + 1;
+        return deleteById(album.getAlbumId());
+    }
+
+    @Override
+    public boolean deleteById(long albumId) throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        int deleted;
+        try {
+            stat = con.prepareStatement(SQL_DELETE);
+            stat.setLong(1, albumId);
+            deleted = stat.executeUpdate();
+        } finally {
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+        return deleted == 1;
+    }
+
+    @Override
+    public BatchResult<Album> deleteAll(Collection<Album> albums) throws SQLException {
+        return BatchWriter.write(albums, batchSize, (con, batch) ->
+                BatchWriter.executeBatch(con, SQL_DELETE, batch, (stat, album) -> stat.setLong(1, album.getAlbumId())));
+    }
+
+    /**
+     * Deletes the album with its tracks and their playlist entries, three
+     * statements in one transaction however many rows they remove. Returns
+     * false if there was no such album.
+     */
+    public boolean deleteCascade(long albumId) throws SQLException {
+        int[] deleted = CascadeDelete.execute(albumId, SQL_DELETE_PLAYLIST_TRACKS, SQL_DELETE_TRACKS, SQL_DELETE);
+        return deleted[2] == 1;
+    }
+
+    /**
+     * Deletes the albums, one JDBC batch per {@link #getBatchSize()} ids.
+     * Returns the number of deleted albums.
+     */
+    public int deleteByIds(Collection<Long> albumIds) throws SQLException {
+        BatchResult<Long> result = BatchWriter.write(albumIds, batchSize, (con, batch) ->
+                BatchWriter.executeBatch(con, SQL_DELETE, batch, (stat, albumId) -> stat.setLong(1, albumId)));
+        if (!result.isComplete()) throw result.getFailures().get(0).getCause();
+        return result.getAffectedRows();
+    }
+
+    private static Album read(ResultSet rs) throws SQLException {
+        Album album = new Album(rs.getString(COL_TITLE), rs.getLong(COL_ARTIST_ID));
+        album.setAlbumId(rs.getLong(COL_ID));
+        return album;
+    }
+
+    private static void bindInsert(PreparedStatement stat, Album album) throws SQLException {
+        stat.setString(1, album.getTitle());
+        stat.setLong(2, album.getArtistId());
+    }
+
+    private static void bindUpdate(PreparedStatement stat, Album album) throws SQLException {
+        stat.setString(1, album.getTitle());
+        stat.setLong(2, album.getAlbumId());
     }
 }
@@ -1,112 +1,282 @@
 package se.iths.persistency.dao;
 
+import se.iths.persistency.BatchResult;
 import se.iths.persistency.CRUDInterface;
 import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.Page;
 import se.iths.persistency.model.Artist;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ArtistDAO implements CRUDInterface<Artist> {
     private static final String TABLE_NAME = "Artist";
     private static final String COL_ID = "ArtistId";
     private static final String COL_NAME = "Name";
-    private static final String COL_COUNT = "Count(*)";
     private static final String SQL_SELECT_BY_ID = String.format("SELECT %s, %s FROM %s WHERE %s = ?", COL_ID, COL_NAME, TABLE_NAME, COL_ID);
     private static final String SQL_SELECT_ALL = String.format("SELECT %s, %s FROM %s", COL_ID, COL_NAME, TABLE_NAME);
-    private static final String SQL_SELECT_LAST = String.format("SELECT %s FROM %s ORDER BY %s DESC", COL_ID, TABLE_NAME, COL_ID);
+    private static final String SQL_SELECT_BY_IDS = String.format("SELECT %s, %s FROM %s WHERE %s IN (", COL_ID, COL_NAME, TABLE_NAME, COL_ID);
+    private static final String SQL_ORDER_BY_ID = String.format(") ORDER BY %s", COL_ID);
+    private static final String SQL_SELECT_PAGE = String.format("SELECT %s, %s FROM %s WHERE %s > ? ORDER BY %s LIMIT ?", COL_ID, COL_NAME, TABLE_NAME, COL_ID, COL_ID);
     private static final String SQL_INSERT = String.format("INSERT INTO %s (%s) VALUES(?)", TABLE_NAME, COL_NAME);
     private static final String SQL_DELETE = String.format("DELETE FROM %s WHERE %s = ?", TABLE_NAME, COL_ID);
     private static final String SQL_UPDATE = String.format("UPDATE %s SET %s = ? WHERE %s = ?", TABLE_NAME, COL_NAME, COL_ID);
-    private static final String SQL_COUNT_ROW = String.format("SELECT %s FROM %s", COL_COUNT, TABLE_NAME);
-    Connection con = null;
+    private static final String SQL_SELECT_ALBUM_IDS = String.format("SELECT AlbumId FROM Album WHERE %s = ?", COL_ID);
+    private static final String SQL_SELECT_TRACK_IDS = String.format("SELECT TrackId FROM Track WHERE AlbumId IN (%s)", SQL_SELECT_ALBUM_IDS);
+    private static final String SQL_DELETE_PLAYLIST_TRACKS = String.format("DELETE FROM PlaylistTrack WHERE TrackId IN (%s)", SQL_SELECT_TRACK_IDS);
+    private static final String SQL_DELETE_TRACKS = String.format("DELETE FROM Track WHERE AlbumId IN (%s)", SQL_SELECT_ALBUM_IDS);
+    private static final String SQL_DELETE_ALBUMS = String.format("DELETE FROM Album WHERE %s = ?", COL_ID);
+    private volatile int batchSize = BatchWriter.DEFAULT_BATCH_SIZE;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     @Override
     public Collection<Artist> findAll() throws SQLException {
-        con = ConnectionHandler.connect();
+        Connection con = ConnectionHandler.connect();
         Collection<Artist> artists = new ArrayList<>();
-        ResultSet rs = con.createStatement().executeQuery(SQL_SELECT_ALL);
-        long oldId = -1L;
-        while (rs.next()) {
-            long artistId = rs.getLong(COL_ID);
-            String name = rs.getString(COL_NAME);
-            if (artistId != oldId) {
-                Artist artist = new Artist(name);
-                artist.setArtistId(artistId);
-                artists.add(artist);
-                oldId = artistId;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = con.createStatement();
+            rs = stmt.executeQuery(SQL_SELECT_ALL);
+            long oldId = -1L;
+            while (rs.next()) {
+                long artistId = rs.getLong(COL_ID);
+                String name = rs.getString(COL_NAME);
+                if (artistId != oldId) {
+                    Artist artist = new Artist(name);
+                    artist.setArtistId(artistId);
+                    artists.add(artist);
+                    oldId = artistId;
+                }
             }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stmt);
+            ConnectionHandler.close(con);
         }
-        ConnectionHandler.close(rs);
-        ConnectionHandler.close(con);
         return artists;
     }
 
+    @Override
+    public Stream<Artist> streamAll() throws SQLException {
+        return ResultStreams.stream(SQL_SELECT_ALL, ArtistDAO::read);
+    }
+
+    /**
+     * Looks up many artists at once, a few IN list queries instead of one query
+     * per id. Ids that don't exist are left out of the map.
+     */
+    public Map<Long, Artist> findByIds(Collection<Long> ids) throws SQLException {
+        Map<Long, Artist> artists = new LinkedHashMap<>();
+        InLists.query(SQL_SELECT_BY_IDS, SQL_ORDER_BY_ID, ids, stat -> {
+            ResultSet rs = stat.executeQuery();
+            try {
+                while (rs.next()) {
+                    Artist artist = read(rs);
+                    artists.put(artist.getArtistId(), artist);
+                }
+            } finally {
+                ConnectionHandler.close(rs);
+            }
+        });
+        return artists;
+    }
+
+    public Map<Long, Artist> findByIds(long... ids) throws SQLException {
+        return findByIds(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns up to limit artists with ids above afterId, ordered by id. Pass 0
+     * for the first page and {@link Page#getLastId()} for the following ones.
+     */
+    public Page<Artist> findPage(long afterId, int limit) throws SQLException {
+        return Pages.query(SQL_SELECT_PAGE, limit, ArtistDAO::read, Artist::getArtistId, afterId);
+    }
+
     @Override
     public Optional<Artist> findById(long artistId) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_SELECT_BY_ID);
-        stat.setLong(1, artistId);
-        ResultSet rs = stat.executeQuery();
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        ResultSet rs = null;
         Optional<Artist> artist = Optional.empty();
-        if (rs.next()) {
-            long newArtistId = rs.getLong(COL_ID);
-            String name = rs.getString(COL_NAME);
-            artist = Optional.of(new Artist(name));
-            artist.get().setArtistId(newArtistId);
+        try {
+            stat = con.prepareStatement(SQL_SELECT_BY_ID);
+            stat.setLong(1, artistId);
+            rs = stat.executeQuery();
+            if (rs.next()) {
+                long newArtistId = rs.getLong(COL_ID);
+                String name = rs.getString(COL_NAME);
+                artist = Optional.of(new Artist(name));
+                artist.get().setArtistId(newArtistId);
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
         }
-        ConnectionHandler.close(rs);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
         return artist;
     }
 
     @Override
     public Optional<Artist> create(Artist artist) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_INSERT);
-        String name = artist.getName();
-        stat.setString(1, name);
-        stat.execute();
-        stat = con.prepareStatement(SQL_SELECT_LAST);
-        ResultSet rs = stat.executeQuery();
-        rs.next();
-        long newArtistId = rs.getLong(COL_ID);
-        artist.setArtistId(newArtistId);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS);
+            bindInsert(stat, artist);
+            stat.executeUpdate();
+            rs = stat.getGeneratedKeys();
+            if (!rs.next()) {
+                throw new SQLException("No id generated for Artist!");
+            }
+            artist.setArtistId(rs.getLong(1));
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
         return Optional.of(artist);
     }
 
+    @Override
+    public BatchResult<Artist> createAll(Collection<Artist> artists) throws SQLException {
+        return BatchWriter.write(artists, batchSize, (con, batch) ->
+                BatchWriter.executeInsertBatch(con, SQL_INSERT, batch, ArtistDAO::bindInsert, Artist::setArtistId));
+    }
+
     @Override
     public Optional<Artist> update(Artist artist) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_UPDATE);
-        stat.setString(1, artist.getName());
-        stat.setLong(2, artist.getArtistId());
-        stat.execute();
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        try {
+            stat = con.prepareStatement(SQL_UPDATE);
+            bindUpdate(stat, artist);
+            stat.execute();
+        } finally {
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
         return Optional.of(artist);
     }
 
+    @Override
+    public BatchResult<Artist> updateAll(Collection<Artist> artists) throws SQLException {
+        return BatchWriter.write(artists, batchSize, (con, batch) ->
+                BatchWriter.executeBatch(con, SQL_UPDATE, batch, ArtistDAO::bindUpdate));
+    }
+
     @Override
     public boolean delete(Artist artist) throws SQLException {
-        con = ConnectionHandler.connect();
-        ResultSet rs = con.createStatement().executeQuery(SQL_COUNT_ROW);
-        rs.next();
-        long countBefore = rs.getLong(COL_COUNT);
-
-        PreparedStatement stat = con.prepareStatement(SQL_DELETE);
-        stat.setLong(1, artist.getArtistId());
-        stat.execute();
-
-        rs = con.createStatement().executeQuery(SQL_COUNT_ROW);
-        rs.next();
-        long countAfter = rs.getLong(COL_COUNT);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);;
-        return countBefore == countAfter + 1;
+        return deleteById(artist.getArtistId());
+    }
+
+    @Override
+    public boolean deleteById(long artistId) throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        int deleted;
+        try {
+            stat = con.prepareStatement(SQL_DELETE);
+            stat.setLong(1, artistId);
+            deleted = stat.executeUpdate();
+        } finally {
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+        return deleted == 1;
+    }
+
+    @Override
+    public BatchResult<Artist> deleteAll(Collection<Artist> artists) throws SQLException {
+        return BatchWriter.write(artists, batchSize, (con, batch) ->
+                BatchWriter.executeBatch(con, SQL_DELETE, batch, (stat, artist) -> stat.setLong(1, artist.getArtistId())));
+    }
+
+    /**
+     * Returns the ids of the artist's albums without reading the albums.
+     */
+    public Collection<Long> findAlbumIds(long artistId) throws SQLException {
+        return findIds(SQL_SELECT_ALBUM_IDS, artistId);
+    }
+
+    /**
+     * Returns the ids of the tracks on the artist's albums without reading
+     * the tracks.
+     */
+    public Collection<Long> findTrackIds(long artistId) throws SQLException {
+        return findIds(SQL_SELECT_TRACK_IDS, artistId);
+    }
+
+    private static Collection<Long> findIds(String sql, long artistId) throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        Collection<Long> ids = new ArrayList<>();
+        try {
+            stat = con.prepareStatement(sql);
+            stat.setLong(1, artistId);
+            rs = stat.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+        return ids;
+    }
+
+    /**
+     * Deletes the artist with its albums, their tracks and the tracks'
+     * playlist entries, four statements in one transaction however many rows
+     * they remove. Returns false if there was no such artist.
+     */
+    public boolean deleteCascade(long artistId) throws SQLException {
+        int[] deleted = CascadeDelete.execute(artistId,
+                SQL_DELETE_PLAYLIST_TRACKS, SQL_DELETE_TRACKS, SQL_DELETE_ALBUMS, SQL_DELETE);
+        return deleted[3] == 1;
+    }
+
+    /**
+     * Deletes the artists, one JDBC batch per {@link #getBatchSize()} ids.
+     * Returns the number of deleted artists.
+     */
+    public int deleteByIds(Collection<Long> artistIds) throws SQLException {
+        BatchResult<Long> result = BatchWriter.write(artistIds, batchSize, (con, batch) ->
+                BatchWriter.executeBatch(con, SQL_DELETE, batch, (stat, artistId) -> stat.setLong(1, artistId)));
+        if (!result.isComplete()) throw result.getFailures().get(0).getCause();
+        return result.getAffectedRows();
+    }
+
+    private static Artist read(ResultSet rs) throws SQLException {
+        Artist artist = new Artist(rs.getString(COL_NAME));
+        artist.setArtistId(rs.getLong(COL_ID));
+        return artist;
+    }
+
+    private static void bindInsert(PreparedStatement stat, Artist artist) throws SQLException {
+        stat.setString(1, artist.getName());
+    }
+
+    private static void bindUpdate(PreparedStatement stat, Artist artist) throws SQLException {
+        stat.setString(1, artist.getName());
+        stat.setLong(2, artist.getArtistId());
     }
 }
@@ -0,0 +1,120 @@
+package se.iths.persistency.dao;
+
+import se.iths.persistency.BatchResult;
+import se.iths.persistency.ConnectionHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Splits a collection into batches of at most batchSize objects and writes them
+ * over one borrowed connection with addBatch/executeBatch. With
+ * rewriteBatchedStatements on, Connector/J sends each batch as a multi-row
+ * statement. Inside a TransactionTemplate transaction a failed batch is
+ * thrown and marks the transaction rollback-only, instead of being reported
+ * in the BatchResult.
+ */
+class BatchWriter {
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    interface Binder<T> {
+        void bind(PreparedStatement stat, T object) throws SQLException;
+    }
+
+    interface KeySetter<T> {
+        void setKey(T object, long key);
+    }
+
+    interface ChunkWriter<T> {
+        /**
+         * Writes one batch and returns the number of affected rows.
+         */
+        int write(Connection con, List<T> batch) throws SQLException;
+    }
+
+    private BatchWriter() {}
+
+    static <T> BatchResult<T> write(Collection<T> objects, int batchSize, ChunkWriter<T> writer) throws SQLException {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        BatchResult<T> result = new BatchResult<>();
+        if (objects.isEmpty()) return result;
+        List<T> pending = new ArrayList<>(objects);
+        Connection con = ConnectionHandler.connect();
+        try {
+            for (int from = 0, batchIndex = 0; from < pending.size(); from += batchSize, batchIndex++) {
+                List<T> batch = pending.subList(from, Math.min(pending.size(), from + batchSize));
+                try {
+                    result.addSucceeded(batch, writer.write(con, batch));
+                } catch (SQLException e) {
+                    // The batches before it are part of the transaction, which can't commit them without this one
+                    if (ConnectionHandler.inTransaction()) {
+                        ConnectionHandler.setRollbackOnly();
+                        throw e;
+                    }
+                    result.addFailure(batchIndex, batch, e);
+                }
+            }
+        } finally {
+            ConnectionHandler.close(con);
+        }
+        return result;
+    }
+
+    static <T> int executeBatch(Connection con, String sql, List<T> batch, Binder<T> binder) throws SQLException {
+        PreparedStatement stat = con.prepareStatement(sql);
+        try {
+            for (T object : batch) {
+                binder.bind(stat, object);
+                stat.addBatch();
+            }
+            return affectedRows(stat.executeBatch());
+        } finally {
+            ConnectionHandler.close(stat);
+        }
+    }
+
+    /**
+     * Executes an INSERT batch and hands the generated keys to keySetter in batch order.
+     */
+    static <T> int executeInsertBatch(Connection con, String sql, List<T> batch, Binder<T> binder, KeySetter<T> keySetter) throws SQLException {
+        PreparedStatement stat = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        ResultSet rs = null;
+        try {
+            for (T object : batch) {
+                binder.bind(stat, object);
+                stat.addBatch();
+            }
+            int inserted = affectedRows(stat.executeBatch());
+            rs = stat.getGeneratedKeys();
+            for (T object : batch) {
+                if (!rs.next()) {
+                    throw new SQLException("Driver returned fewer generated keys than inserted rows!");
+                }
+                keySetter.setKey(object, rs.getLong(1));
+            }
+            return inserted;
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+        }
+    }
+
+    /**
+     * Sums the update counts of an executed batch. Drivers that report
+     * {@link Statement#SUCCESS_NO_INFO} are counted as one row each.
+     */
+    static int affectedRows(int[] updateCounts) {
+        int rows = 0;
+        for (int count : updateCounts) {
+            if (count > 0) rows += count;
+            else if (count == Statement.SUCCESS_NO_INFO) rows++;
+        }
+        return rows;
+    }
+}
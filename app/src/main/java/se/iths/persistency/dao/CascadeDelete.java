@@ -0,0 +1,36 @@
+package se.iths.persistency.dao;
+
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Runs DELETE statements that each take the same parent id, in order and in
+ * one transaction. The statements select the child rows with
+ * {@code IN (SELECT ...)} subqueries on that id, so their number doesn't
+ * grow with the number of rows they delete.
+ */
+class CascadeDelete {
+    private CascadeDelete() {}
+
+    /**
+     * Returns the number of rows each statement deleted.
+     */
+    static int[] execute(long parentId, String... statements) throws SQLException {
+        return TransactionTemplate.inTransaction(ctx -> {
+            int[] deleted = new int[statements.length];
+            for (int i = 0; i < statements.length; i++) {
+                PreparedStatement stat = ctx.getConnection().prepareStatement(statements[i]);
+                try {
+                    stat.setLong(1, parentId);
+                    deleted[i] = stat.executeUpdate();
+                } finally {
+                    ConnectionHandler.close(stat);
+                }
+            }
+            return deleted;
+        });
+    }
+}
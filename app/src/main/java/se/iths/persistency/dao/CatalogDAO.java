@@ -0,0 +1,195 @@
+package se.iths.persistency.dao;
+
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.FetchPlan;
+import se.iths.persistency.HighWaterMark;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Loads the Artist -> Album -> Track tree with one joined query ordered by
+ * artist, album and track, building the objects in a single pass over the rows.
+ * Shallower {@link FetchPlan}s load the rest of the tree lazily through the DAOs.
+ */
+public class CatalogDAO {
+    private final ArtistDAO artistDAO = new ArtistDAO();
+    private final AlbumDAO albumDAO = new AlbumDAO();
+    private final TrackDAO trackDAO = new TrackDAO();
+    private static final String COL_ARTIST_ID = "ArtistId";
+    private static final String COL_ARTIST_NAME = "ArtistName";
+    private static final String COL_ALBUM_ID = "AlbumId";
+    private static final String COL_ALBUM_TITLE = "AlbumTitle";
+    private static final String COL_TRACK_ID = "TrackId";
+    private static final String COL_TRACK_NAME = "TrackName";
+    private static final String SQL_SELECT_TREE = String.format(
+            "SELECT ar.ArtistId AS %s, ar.Name AS %s, al.AlbumId AS %s, al.Title AS %s, t.TrackId AS %s, t.Name AS %s"
+                    + " FROM Artist ar"
+                    + " LEFT JOIN Album al ON al.ArtistId = ar.ArtistId"
+                    + " LEFT JOIN Track t ON t.AlbumId = al.AlbumId",
+            COL_ARTIST_ID, COL_ARTIST_NAME, COL_ALBUM_ID, COL_ALBUM_TITLE, COL_TRACK_ID, COL_TRACK_NAME);
+    private static final String SQL_ORDER = " ORDER BY ar.ArtistId, al.AlbumId, t.TrackId";
+    private static final String SQL_SELECT_ALL = SQL_SELECT_TREE + SQL_ORDER;
+    private static final String SQL_SELECT_BY_ARTIST_ID = SQL_SELECT_TREE + " WHERE ar.ArtistId = ?" + SQL_ORDER;
+    private static final String SQL_SELECT_HIGH_WATER_MARK = "SELECT"
+            + " (SELECT COALESCE(MAX(ArtistId), 0) FROM Artist), (SELECT COALESCE(MAX(AlbumId), 0) FROM Album),"
+            + " (SELECT COALESCE(MAX(TrackId), 0) FROM Track), (SELECT COALESCE(MAX(ChangeId), 0) FROM CatalogChange)";
+    private static final String SQL_SELECT_CHANGE_LOG = "SELECT 1 FROM CatalogChange WHERE 1 = 0";
+    private static final String SQL_STATE_TABLE_NOT_FOUND = "42S02";
+
+    public Collection<Artist> findAll() throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        Collection<Artist> artists;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_ALL);
+            artists = read(stat);
+        } finally {
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+        return artists;
+    }
+
+    /**
+     * Empty when the database has no CatalogChange table, i.e. db_changelog.sql
+     * hasn't been run, so changes can't be told from the mark.
+     */
+    public Optional<HighWaterMark> findHighWaterMark() throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        HighWaterMark mark;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_HIGH_WATER_MARK);
+            rs = stat.executeQuery();
+            rs.next();
+            mark = new HighWaterMark(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4));
+        } catch (SQLException e) {
+            if (SQL_STATE_TABLE_NOT_FOUND.equals(e.getSQLState()) && !hasChangeLog(con)) return Optional.empty();
+            throw e;
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+        return Optional.of(mark);
+    }
+
+    private static boolean hasChangeLog(Connection con) throws SQLException {
+        PreparedStatement stat = null;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_CHANGE_LOG);
+            stat.executeQuery().close();
+            return true;
+        } catch (SQLException e) {
+            if (SQL_STATE_TABLE_NOT_FOUND.equals(e.getSQLState())) return false;
+            throw e;
+        } finally {
+            ConnectionHandler.close(stat);
+        }
+    }
+
+    public Optional<Artist> findByArtistId(long artistId) throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        Collection<Artist> artists;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_BY_ARTIST_ID);
+            stat.setLong(1, artistId);
+            artists = read(stat);
+        } finally {
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+        return artists.stream().findFirst();
+    }
+
+    public Optional<Artist> findByArtistId(long artistId, FetchPlan plan) throws SQLException {
+        if (plan == FetchPlan.DEEP) return findByArtistId(artistId);
+        Optional<Artist> artist = artistDAO.findById(artistId);
+        if (artist.isEmpty()) return artist;
+        if (plan == FetchPlan.WITH_ALBUMS) {
+            artist.get().addAll(withLazyTracks(albumDAO.findByArtistId(artistId)));
+        } else {
+            artist.get().setAlbumLoader(() -> withLazyTracks(albumDAO.findByArtistId(artistId)));
+        }
+        return artist;
+    }
+
+    private Collection<Album> withLazyTracks(Collection<Album> albums) {
+        List<Long> albumIds = new ArrayList<>();
+        albums.forEach(album -> albumIds.add(album.getAlbumId()));
+        AlbumTracks tracks = new AlbumTracks(albumIds);
+        albums.forEach(album -> album.setTrackLoader(() -> tracks.of(album.getAlbumId())));
+        return albums;
+    }
+
+    public Collection<Artist> findByArtistIds(Collection<Long> artistIds) throws SQLException {
+        Collection<Artist> artists = new ArrayList<>();
+        InLists.query(SQL_SELECT_TREE + " WHERE ar.ArtistId IN (", ")" + SQL_ORDER, artistIds,
+                stat -> artists.addAll(read(stat)));
+        return artists;
+    }
+
+    private Collection<Artist> read(PreparedStatement stat) throws SQLException {
+        Map<Long, Artist> artists = new LinkedHashMap<>();
+        ResultSet rs = stat.executeQuery();
+        try {
+            Artist artist = null;
+            Album album = null;
+            while (rs.next()) {
+                long artistId = rs.getLong(COL_ARTIST_ID);
+                if (artist == null || artist.getArtistId() != artistId) {
+                    artist = new Artist(rs.getString(COL_ARTIST_NAME));
+                    artist.setArtistId(artistId);
+                    artists.put(artistId, artist);
+                    album = null;
+                }
+                long albumId = rs.getLong(COL_ALBUM_ID);
+                if (rs.wasNull()) continue;
+                if (album == null || album.getAlbumId() != albumId) {
+                    album = new Album(rs.getString(COL_ALBUM_TITLE), artistId);
+                    album.setAlbumId(albumId);
+                    artist.add(album);
+                }
+                long trackId = rs.getLong(COL_TRACK_ID);
+                if (rs.wasNull()) continue;
+                Track track = new Track(rs.getString(COL_TRACK_NAME), albumId);
+                track.setTrackId(trackId);
+                album.add(track);
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+        }
+        return artists.values();
+    }
+
+    // The first album whose tracks are accessed loads the tracks of all the
+    // artist's albums with one query, instead of one query per album
+    private class AlbumTracks {
+        private final List<Long> albumIds;
+        private Map<Long, List<Track>> tracks;
+
+        AlbumTracks(List<Long> albumIds) {
+            this.albumIds = albumIds;
+        }
+
+        synchronized Collection<Track> of(long albumId) throws SQLException {
+            if (tracks == null) tracks = trackDAO.findByAlbumIds(albumIds);
+            return tracks.getOrDefault(albumId, Collections.emptyList());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package se.iths.persistency.dao;
+
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.model.CatalogChange;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the CatalogChange table that the triggers in db_changelog.sql fill
+ * on updates and deletes. Inserts aren't logged, new rows are found by
+ * their ids being above the last {@link se.iths.persistency.HighWaterMark}.
+ * The table is never pruned, since the mark reads its max id.
+ */
+public class ChangeLogDAO {
+    public static final String ARTIST = "Artist";
+    public static final String ALBUM = "Album";
+    public static final String TRACK = "Track";
+    private static final String TABLE_NAME = "CatalogChange";
+    private static final String COL_ID = "ChangeId";
+    private static final String COL_TABLE_NAME = "TableName";
+    private static final String COL_ROW_ID = "RowId";
+    private static final String COL_PARENT_ID = "ParentId";
+    private static final String SQL_SELECT_BETWEEN = String.format("SELECT %s, %s, %s, %s FROM %s WHERE %s > ? AND %s <= ? ORDER BY %s",
+            COL_ID, COL_TABLE_NAME, COL_ROW_ID, COL_PARENT_ID, TABLE_NAME, COL_ID, COL_ID, COL_ID);
+
+    /**
+     * The changes after afterChangeId, up to and including upToChangeId, in
+     * the order they were made.
+     */
+    public List<CatalogChange> findBetween(long afterChangeId, long upToChangeId) throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        List<CatalogChange> changes = new ArrayList<>();
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_BETWEEN);
+            stat.setLong(1, afterChangeId);
+            stat.setLong(2, upToChangeId);
+            rs = stat.executeQuery();
+            while (rs.next()) {
+                changes.add(new CatalogChange(rs.getLong(COL_ID), rs.getString(COL_TABLE_NAME),
+                        rs.getLong(COL_ROW_ID), rs.getLong(COL_PARENT_ID)));
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,71 @@
+package se.iths.persistency.dao;
+
+import se.iths.persistency.ConnectionHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Runs a query with an {@code IN (?, ?, ...)} list over any number of ids.
+ * Duplicates are dropped and the ids are sent in chunks of at most
+ * {@value #MAX_CHUNK}, all on one connection. Each chunk is padded by
+ * repeating its last id up to one of a few fixed sizes, so only a handful of
+ * distinct statements ever reach the statement cache and the server.
+ */
+class InLists {
+    static final int MAX_CHUNK = 500;
+    private static final int[] CHUNK_SIZES = {1, 8, 32, 128, MAX_CHUNK};
+
+    interface ChunkReader {
+        void read(PreparedStatement stat) throws SQLException;
+    }
+
+    private InLists() {}
+
+    /**
+     * @param sqlBefore SQL up to and including "IN ("
+     * @param sqlAfter  SQL from the closing ")" on
+     */
+    static void query(String sqlBefore, String sqlAfter, Collection<Long> ids, ChunkReader reader) throws SQLException {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinct.isEmpty()) return;
+        Connection con = ConnectionHandler.connect();
+        try {
+            for (int from = 0; from < distinct.size(); from += MAX_CHUNK) {
+                List<Long> chunk = distinct.subList(from, Math.min(from + MAX_CHUNK, distinct.size()));
+                int size = paddedSize(chunk.size());
+                PreparedStatement stat = con.prepareStatement(sqlBefore + placeholders(size) + sqlAfter);
+                try {
+                    for (int i = 0; i < size; i++) {
+                        stat.setLong(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                    }
+                    reader.read(stat);
+                } finally {
+                    ConnectionHandler.close(stat);
+                }
+            }
+        } finally {
+            ConnectionHandler.close(con);
+        }
+    }
+
+    private static int paddedSize(int size) {
+        for (int chunkSize : CHUNK_SIZES) {
+            if (size <= chunkSize) return chunkSize;
+        }
+        return MAX_CHUNK;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
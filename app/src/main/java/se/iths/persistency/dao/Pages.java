@@ -0,0 +1,56 @@
+package se.iths.persistency.dao;
+
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.Page;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs keyset paginated queries, i.e. {@code WHERE id > ? ORDER BY id LIMIT ?}
+ * with the limit as the last parameter. One row more than the limit is read to
+ * tell whether there is a next page without a COUNT query.
+ */
+class Pages {
+    static final int MAX_LIMIT = 1_000;
+
+    private Pages() {}
+
+    static <T> Page<T> query(String sql, int limit, ResultStreams.RowMapper<T> mapper, ToLongFunction<T> idOf,
+                             long... params) throws SQLException {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Page limit must be between 1 and " + MAX_LIMIT);
+        }
+        Connection con = ConnectionHandler.connect();
+        List<T> items = new ArrayList<>(limit);
+        boolean hasNext = false;
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(sql);
+            for (int i = 0; i < params.length; i++) {
+                stat.setLong(i + 1, params[i]);
+            }
+            stat.setInt(params.length + 1, limit + 1);
+            rs = stat.executeQuery();
+            while (rs.next()) {
+                if (items.size() == limit) {
+                    hasNext = true;
+                    break;
+                }
+                items.add(mapper.map(rs));
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+        long lastId = items.isEmpty() ? params[params.length - 1] : idOf.applyAsLong(items.get(items.size() - 1));
+        return new Page<>(items, lastId, hasNext);
+    }
+}
@@ -0,0 +1,87 @@
+package se.iths.persistency.dao;
+
+import se.iths.persistency.ConnectionHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns a query into a lazily consumed {@link Stream}. Rows are fetched
+ * {@value #FETCH_SIZE} at a time, which with useCursorFetch on makes
+ * Connector/J read them from a server side cursor instead of buffering the
+ * whole result. The connection stays borrowed until the stream is closed or
+ * fully consumed, so callers should use try-with-resources.
+ */
+class ResultStreams {
+    static final int FETCH_SIZE = 1_000;
+
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private ResultStreams() {}
+
+    static <T> Stream<T> stream(String sql, RowMapper<T> mapper) throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        ResultSet rs;
+        try {
+            stat = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stat.setFetchSize(FETCH_SIZE);
+            rs = stat.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+            throw e;
+        }
+        RowSpliterator<T> rows = new RowSpliterator<>(con, stat, rs, mapper);
+        return StreamSupport.stream(rows, false).onClose(rows::close);
+    }
+
+    private static class RowSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection con;
+        private final PreparedStatement stat;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean closed;
+
+        RowSpliterator(Connection con, PreparedStatement stat, ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.con = con;
+            this.stat = stat;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) return false;
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapper.map(rs));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new RuntimeException("Error reading database stream", e);
+            }
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+    }
+}
@@ -1,152 +1,302 @@
 package se.iths.persistency.dao;
 
+import se.iths.persistency.BatchResult;
 import se.iths.persistency.CRUDInterface;
 import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.Page;
 import se.iths.persistency.model.Track;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TrackDAO implements CRUDInterface<Track> {
     private static final String TABLE_NAME = "Track";
     private static final String COL_ID = "TrackId";
     private static final String COL_ALBUM_ID = "Albumid";
     private static final String COL_NAME = "Name";
-    private static final String COL_COUNT = "Count(*)";
     private static final String SQL_SELECT_BY_ID = String.format("SELECT %s, %s FROM %s WHERE %s = ?", COL_NAME, COL_ALBUM_ID, TABLE_NAME, COL_ID);
     private static final String SQL_SELECT_BY_PARENT_ID = String.format("SELECT %s, %s, %s FROM %s WHERE %S = ?", COL_ID, COL_NAME, COL_ALBUM_ID, TABLE_NAME, COL_ALBUM_ID);
     private static final String SQL_SELECT_ALL = String.format("SELECT %s, %s, %s FROM %s", COL_ID, COL_NAME, COL_ALBUM_ID, TABLE_NAME);
-    private static final String SQL_SELECT_LAST = String.format("SELECT %s FROM %s ORDER BY %s DESC", COL_ID, TABLE_NAME, COL_ID);
+    private static final String SQL_SELECT_BY_IDS = String.format("SELECT %s, %s, %s FROM %s WHERE %s IN (", COL_ID, COL_NAME, COL_ALBUM_ID, TABLE_NAME, COL_ID);
+    private static final String SQL_SELECT_BY_PARENT_IDS = String.format("SELECT %s, %s, %s FROM %s WHERE %s IN (", COL_ID, COL_NAME, COL_ALBUM_ID, TABLE_NAME, COL_ALBUM_ID);
+    private static final String SQL_ORDER_BY_ID = String.format(") ORDER BY %s", COL_ID);
+    private static final String SQL_SELECT_PAGE = String.format("SELECT %s, %s, %s FROM %s WHERE %s > ? ORDER BY %s LIMIT ?", COL_ID, COL_NAME, COL_ALBUM_ID, TABLE_NAME, COL_ID, COL_ID);
+    private static final String SQL_SELECT_PAGE_BY_PARENT_ID = String.format("SELECT %s, %s, %s FROM %s WHERE %s = ? AND %s > ? ORDER BY %s LIMIT ?", COL_ID, COL_NAME, COL_ALBUM_ID, TABLE_NAME, COL_ALBUM_ID, COL_ID, COL_ID);
     private static final String SQL_INSERT = String.format("INSERT INTO %s(%s, AlbumId, MediaTypeId, Milliseconds, UnitPrice) VALUES (?, ?, ?, ?, ?)", TABLE_NAME, COL_NAME);
     private static final String SQL_DELETE = String.format("DELETE FROM %s WHERE %s = ?", TABLE_NAME, COL_ID);
     private static final String SQL_DELETE_FROM_PLAYLIST = String.format("DELETE FROM PlaylistTrack WHERE %s = ?", COL_ID);
     private static final String SQL_UPDATE = String.format("UPDATE %s SET %s = ? WHERE %s = ?", TABLE_NAME, COL_NAME, COL_ID);
-    private static final String SQL_COUNT_ROW = String.format("SELECT %s FROM %s", COL_COUNT, TABLE_NAME);
-    Connection con = null;
+    private volatile int batchSize = BatchWriter.DEFAULT_BATCH_SIZE;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     @Override
     public Collection<Track> findAll() throws SQLException {
-        con = ConnectionHandler.connect();
+        Connection con = ConnectionHandler.connect();
         Collection<Track> tracks = new ArrayList<>();
-        ResultSet rs = con.createStatement().executeQuery(SQL_SELECT_ALL);
         long oldId = -1L;
-        while (rs.next()) {
-            long trackId = rs.getLong(COL_ID);
-            String name = rs.getString(COL_NAME);
-            long albumId = rs.getLong(COL_ALBUM_ID);
-            if (trackId != oldId) {
-                Track track = new Track(name, albumId);
-                track.setTrackId(trackId);
-                tracks.add(track);
-                oldId = trackId;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = con.createStatement();
+            rs = stmt.executeQuery(SQL_SELECT_ALL);
+            while (rs.next()) {
+                long trackId = rs.getLong(COL_ID);
+                String name = rs.getString(COL_NAME);
+                long albumId = rs.getLong(COL_ALBUM_ID);
+                if (trackId != oldId) {
+                    Track track = new Track(name, albumId);
+                    track.setTrackId(trackId);
+                    tracks.add(track);
+                    oldId = trackId;
+                }
             }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stmt);
+            ConnectionHandler.close(con);
         }
-        ConnectionHandler.close(rs);
-        ConnectionHandler.close(con);
         return tracks;
     }
 
+    @Override
+    public Stream<Track> streamAll() throws SQLException {
+        return ResultStreams.stream(SQL_SELECT_ALL, TrackDAO::read);
+    }
+
+    /**
+     * Looks up many tracks at once, a few IN list queries instead of one query
+     * per id. Ids that don't exist are left out of the map.
+     */
+    public Map<Long, Track> findByIds(Collection<Long> ids) throws SQLException {
+        Map<Long, Track> tracks = new LinkedHashMap<>();
+        InLists.query(SQL_SELECT_BY_IDS, SQL_ORDER_BY_ID, ids, stat -> {
+            ResultSet rs = stat.executeQuery();
+            try {
+                while (rs.next()) {
+                    Track track = read(rs);
+                    tracks.put(track.getTrackId(), track);
+                }
+            } finally {
+                ConnectionHandler.close(rs);
+            }
+        });
+        return tracks;
+    }
+
+    public Map<Long, Track> findByIds(long... ids) throws SQLException {
+        return findByIds(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * The tracks of many albums at once, keyed by album id. Albums without
+     * tracks are left out of the map.
+     */
+    public Map<Long, List<Track>> findByAlbumIds(Collection<Long> albumIds) throws SQLException {
+        Map<Long, List<Track>> tracks = new LinkedHashMap<>();
+        InLists.query(SQL_SELECT_BY_PARENT_IDS, SQL_ORDER_BY_ID, albumIds, stat -> {
+            ResultSet rs = stat.executeQuery();
+            try {
+                while (rs.next()) {
+                    Track track = read(rs);
+                    tracks.computeIfAbsent(track.getAlbumId(), id -> new ArrayList<>()).add(track);
+                }
+            } finally {
+                ConnectionHandler.close(rs);
+            }
+        });
+        return tracks;
+    }
+
+    /**
+     * Returns up to limit tracks with ids above afterId, ordered by id. Pass 0
+     * for the first page and {@link Page#getLastId()} for the following ones.
+     */
+    public Page<Track> findPage(long afterId, int limit) throws SQLException {
+        return Pages.query(SQL_SELECT_PAGE, limit, TrackDAO::read, Track::getTrackId, afterId);
+    }
+
+    /**
+     * Like {@link #findPage(long, int)}, restricted to the tracks of one album.
+     */
+    public Page<Track> findPageByParent(long albumId, long afterId, int limit) throws SQLException {
+        return Pages.query(SQL_SELECT_PAGE_BY_PARENT_ID, limit, TrackDAO::read, Track::getTrackId, albumId, afterId);
+    }
+
     @Override
     public Optional<Track> findById(long trackId) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_SELECT_BY_ID);
-        stat.setLong(1, trackId);
-        ResultSet rs = stat.executeQuery();
+        Connection con = ConnectionHandler.connect();
         Optional<Track> track = Optional.empty();
-        if (rs.next()) {
-            String name = rs.getString(COL_NAME);
-            long albumId = rs.getLong(COL_ALBUM_ID);
-            track = Optional.of(new Track(name, albumId));
-            track.get().setTrackId(trackId);
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_BY_ID);
+            stat.setLong(1, trackId);
+            rs = stat.executeQuery();
+            if (rs.next()) {
+                String name = rs.getString(COL_NAME);
+                long albumId = rs.getLong(COL_ALBUM_ID);
+                track = Optional.of(new Track(name, albumId));
+                track.get().setTrackId(trackId);
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
         }
-        ConnectionHandler.close(rs);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
         return track;
     }
 
 
 
     public Collection<Track> findByAlbumId(long albumId) throws SQLException {
-        con = ConnectionHandler.connect();
+        Connection con = ConnectionHandler.connect();
         Collection<Track> tracks = new ArrayList<>();
-        PreparedStatement stat = con.prepareStatement(SQL_SELECT_BY_PARENT_ID);
-        stat.setLong(1, albumId);
-        ResultSet rs = stat.executeQuery();
-        while (rs.next()) {
-            long trackId = rs.getLong(COL_ID);
-            String name = rs.getString(COL_NAME);
-            Optional<Track> track = Optional.of(new Track(name, albumId));
-            track.get().setTrackId(trackId);
-            tracks.add(track.get());
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(SQL_SELECT_BY_PARENT_ID);
+            stat.setLong(1, albumId);
+            rs = stat.executeQuery();
+            while (rs.next()) {
+                long trackId = rs.getLong(COL_ID);
+                String name = rs.getString(COL_NAME);
+                Optional<Track> track = Optional.of(new Track(name, albumId));
+                track.get().setTrackId(trackId);
+                tracks.add(track.get());
+            }
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
         }
-        ConnectionHandler.close(rs);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
         return tracks;
     }
 
     @Override
     public Optional<Track> create(Track track) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_INSERT);
-        String name = track.getName();
-        long albumId = track.getAlbumId();
-        if (albumId <= 0L) {
+        if (track.getAlbumId() <= 0L) {
             throw new RuntimeException("Album can't be created without Artist!");
         }
-        stat.setString(1, name);
-        stat.setLong(2, albumId);
-        stat.setLong(3, 1);
-        stat.setLong(4, 1);
-        stat.setDouble(5, 0.0);
-        stat.execute();
-        stat = con.prepareStatement(SQL_SELECT_LAST);
-        ResultSet rs = stat.executeQuery();
-        rs.next();
-        long newTrackId = rs.getLong(COL_ID);
-        track.setTrackId(newTrackId);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        ResultSet rs = null;
+        try {
+            stat = con.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS);
+            bindInsert(stat, track);
+            stat.executeUpdate();
+            rs = stat.getGeneratedKeys();
+            if (!rs.next()) {
+                throw new SQLException("No id generated for Track!");
+            }
+            track.setTrackId(rs.getLong(1));
+        } finally {
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
         return Optional.of(track);
     }
 
+    @Override
+    public BatchResult<Track> createAll(Collection<Track> tracks) throws SQLException {
+        for (Track track : tracks) {
+            if (track.getAlbumId() <= 0L) {
+                throw new RuntimeException("Album can't be created without Artist!");
+            }
+        }
+        return BatchWriter.write(tracks, batchSize, (con, batch) ->
+                BatchWriter.executeInsertBatch(con, SQL_INSERT, batch, TrackDAO::bindInsert, Track::setTrackId));
+    }
+
     @Override
     public Optional<Track> update(Track track) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_UPDATE);
-        stat.setString(1, track.getName());
-        stat.setLong(2, track.getTrackId());
-        stat.execute();
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
+        Connection con = ConnectionHandler.connect();
+        PreparedStatement stat = null;
+        try {
+            stat = con.prepareStatement(SQL_UPDATE);
+            bindUpdate(stat, track);
+            stat.execute();
+        } finally {
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
         return Optional.of(track);
     }
 
+    @Override
+    public BatchResult<Track> updateAll(Collection<Track> tracks) throws SQLException {
+        return BatchWriter.write(tracks, batchSize, (con, batch) ->
+                BatchWriter.executeBatch(con, SQL_UPDATE, batch, TrackDAO::bindUpdate));
+    }
+
     @Override
     public boolean delete(Track track) throws SQLException {
-        con = ConnectionHandler.connect();
-        PreparedStatement stat = con.prepareStatement(SQL_DELETE_FROM_PLAYLIST);
-        stat.setLong(1, track.getTrackId());
-        stat.execute();
-
-        ResultSet rs = con.createStatement().executeQuery(SQL_COUNT_ROW);
-        rs.next();
-        long countBefore = rs.getLong(COL_COUNT);
-
-        stat = con.prepareStatement(SQL_DELETE);
-        stat.setLong(1, track.getTrackId());
-        stat.execute();
-
-        rs = con.createStatement().executeQuery(SQL_COUNT_ROW);
-        rs.next();
-        long countAfter = rs.getLong(COL_COUNT);
-        ConnectionHandler.close(stat);
-        ConnectionHandler.close(con);
-        return countBefore == countAfter + 1;
+        return deleteById(track.getTrackId());
+    }
+
+    @Override
+    public boolean deleteById(long trackId) throws SQLException {
+        // One transaction, so the playlist entries stay when the track can't go
+        int[] deleted = CascadeDelete.execute(trackId, SQL_DELETE_FROM_PLAYLIST, SQL_DELETE);
+        return deleted[1] == 1;
+    }
+
+    @Override
+    public BatchResult<Track> deleteAll(Collection<Track> tracks) throws SQLException {
+        return BatchWriter.write(tracks, batchSize, (con, batch) -> {
+            BatchWriter.executeBatch(con, SQL_DELETE_FROM_PLAYLIST, batch, (stat, track) -> stat.setLong(1, track.getTrackId()));
+            return BatchWriter.executeBatch(con, SQL_DELETE, batch, (stat, track) -> stat.setLong(1, track.getTrackId()));
+        });
+    }
+
+    /**
+     * Deletes the tracks and their playlist entries, one JDBC batch per table
+     * and {@link #getBatchSize()} ids. Returns the number of deleted tracks.
+     */
+    public int deleteByIds(Collection<Long> trackIds) throws SQLException {
+        BatchResult<Long> result = BatchWriter.write(trackIds, batchSize, (con, batch) -> {
+            BatchWriter.executeBatch(con, SQL_DELETE_FROM_PLAYLIST, batch, (stat, trackId) -> stat.setLong(1, trackId));
+            return BatchWriter.executeBatch(con, SQL_DELETE, batch, (stat, trackId) -> stat.setLong(1, trackId));
+        });
+        if (!result.isComplete()) throw result.getFailures().get(0).getCause();
+        return result.getAffectedRows();
+    }
+
+    private static Track read(ResultSet rs) throws SQLException {
+        Track track = new Track(rs.getString(COL_NAME), rs.getLong(COL_ALBUM_ID));
+        track.setTrackId(rs.getLong(COL_ID));
+        return track;
+    }
+
+    private static void bindInsert(PreparedStatement stat, Track track) throws SQLException {
+        stat.setString(1, track.getName());
+        stat.setLong(2, track.getAlbumId());
+        stat.setLong(3, 1);
+        stat.setLong(4, 1);
+        stat.setDouble(5, 0.0);
+    }
+
+    private static void bindUpdate(PreparedStatement stat, Track track) throws SQLException {
+        stat.setString(1, track.getName());
+        stat.setLong(2, track.getTrackId());
     }
 }
@@ -0,0 +1,216 @@
+package se.iths.persistency.dao;
+
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Tracks changes to entities the caller already holds and writes them in one
+ * transaction. register remembers an entity's column values, and commit
+ * compares every registered entity with them and updates only the columns
+ * that differ. Updates are grouped into one JDBC batch per table and set of
+ * changed columns. After a commit the written values are the new baseline,
+ * so the same entities can be changed and committed again without a refetch.
+ * Inside a TransactionTemplate that happens only once the enclosing
+ * transaction commits, so changes it rolls back are written again by the
+ * next commit.
+ * <p>
+ * A unit of work is meant for one thread at a time.
+ */
+public class UnitOfWork {
+    private static final Mapping<Artist> ARTIST = new Mapping<>("Artist", "ArtistId",
+            new String[]{"Name"}, Artist::getArtistId, artist -> new Object[]{artist.getName()});
+    private static final Mapping<Album> ALBUM = new Mapping<>("Album", "AlbumId",
+            new String[]{"Title", "ArtistId"}, Album::getAlbumId, album -> new Object[]{album.getTitle(), album.getArtistId()});
+    private static final Mapping<Track> TRACK = new Mapping<>("Track", "TrackId",
+            new String[]{"Name", "AlbumId"}, Track::getTrackId, track -> new Object[]{track.getName(), track.getAlbumId()});
+    private final Map<Object, Registration<?>> registered = new IdentityHashMap<>();
+
+    public Artist register(Artist artist) {
+        return register(artist, ARTIST);
+    }
+
+    public Album register(Album album) {
+        return register(album, ALBUM);
+    }
+
+    public Track register(Track track) {
+        return register(track, TRACK);
+    }
+
+    private <T> T register(T entity, Mapping<T> mapping) {
+        registered.computeIfAbsent(entity, e -> new Registration<>(entity, mapping));
+        return entity;
+    }
+
+    public boolean isDirty() {
+        for (Registration<?> registration : registered.values()) {
+            if (registration.changedColumns() != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The registered entities of the given type that changed since they were
+     * registered or last committed.
+     */
+    public <T> List<T> getDirty(Class<T> type) {
+        List<T> dirty = new ArrayList<>();
+        for (Registration<?> registration : registered.values()) {
+            if (type.isInstance(registration.entity) && registration.changedColumns() != 0) {
+                dirty.add(type.cast(registration.entity));
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Writes the changed columns of all registered entities in one transaction,
+     * and rolls all of them back if any update fails. Run inside a
+     * TransactionTemplate, the writes join its transaction instead, and a
+     * failure marks it rollback-only. Returns the number of updated rows.
+     */
+    public int commit() throws SQLException {
+        Map<String, List<Registration<?>>> groups = new LinkedHashMap<>();
+        List<Runnable> rebases = new ArrayList<>();
+        for (Registration<?> registration : registered.values()) {
+            int changed = registration.changedColumns();
+            if (changed != 0) {
+                groups.computeIfAbsent(registration.mapping.table + ":" + changed, key -> new ArrayList<>()).add(registration);
+                Object[] written = registration.current();
+                registration.written = written;
+                rebases.add(() -> registration.original = written);
+            }
+        }
+        if (groups.isEmpty()) return 0;
+
+        int updated = 0;
+        // Inside a TransactionTemplate the enclosing transaction commits
+        boolean joined = ConnectionHandler.inTransaction();
+        Connection con = ConnectionHandler.connect();
+        try {
+            if (!joined) con.setAutoCommit(false);
+            for (List<Registration<?>> group : groups.values()) {
+                int changed = group.get(0).changedColumns();
+                String sql = group.get(0).mapping.updateSql(changed);
+                for (int from = 0; from < group.size(); from += BatchWriter.DEFAULT_BATCH_SIZE) {
+                    List<Registration<?>> batch = group.subList(from, Math.min(group.size(), from + BatchWriter.DEFAULT_BATCH_SIZE));
+                    updated += BatchWriter.executeBatch(con, sql, batch, (stat, registration) -> {
+                        Object[] values = registration.written;
+                        int index = 1;
+                        for (int column = 0; column < values.length; column++) {
+                            if ((changed & 1 << column) != 0) stat.setObject(index++, values[column]);
+                        }
+                        stat.setLong(index, registration.id());
+                    });
+                }
+            }
+            if (!joined) con.commit();
+        } catch (SQLException | RuntimeException e) {
+            if (joined) ConnectionHandler.setRollbackOnly();
+            else rollback(con, e);
+            throw e;
+        } finally {
+            if (!joined) restoreAutoCommit(con);
+            ConnectionHandler.close(con);
+        }
+        // Joined, the entities stay dirty until the enclosing transaction commits
+        ConnectionHandler.afterCommit(() -> rebases.forEach(Runnable::run));
+        return updated;
+    }
+
+    private static void rollback(Connection con, Exception cause) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    // Must not hide the exception of a failed commit
+    private static void restoreAutoCommit(Connection con) {
+        try {
+            con.setAutoCommit(true);
+        } catch (SQLException ignore) {}
+    }
+
+    /**
+     * Stops tracking all entities, without writing their changes.
+     */
+    public void clear() {
+        registered.clear();
+    }
+
+    private static class Mapping<T> {
+        final String table;
+        final String idColumn;
+        final String[] columns;
+        final ToLongFunction<T> idOf;
+        final Function<T, Object[]> valuesOf;
+
+        Mapping(String table, String idColumn, String[] columns, ToLongFunction<T> idOf, Function<T, Object[]> valuesOf) {
+            this.table = table;
+            this.idColumn = idColumn;
+            this.columns = columns;
+            this.idOf = idOf;
+            this.valuesOf = valuesOf;
+        }
+
+        String updateSql(int changedColumns) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+            String separator = "";
+            for (int column = 0; column < columns.length; column++) {
+                if ((changedColumns & 1 << column) == 0) continue;
+                sql.append(separator).append(columns[column]).append(" = ?");
+                separator = ", ";
+            }
+            return sql.append(" WHERE ").append(idColumn).append(" = ?").toString();
+        }
+    }
+
+    private static class Registration<T> {
+        final T entity;
+        final Mapping<T> mapping;
+        Object[] original;
+        // What the commit in progress writes
+        Object[] written;
+
+        Registration(T entity, Mapping<T> mapping) {
+            this.entity = entity;
+            this.mapping = mapping;
+            this.original = mapping.valuesOf.apply(entity);
+        }
+
+        Object[] current() {
+            return mapping.valuesOf.apply(entity);
+        }
+
+        long id() {
+            return mapping.idOf.applyAsLong(entity);
+        }
+
+        /**
+         * Bit i is set when column i differs from the baseline.
+         */
+        int changedColumns() {
+            Object[] values = current();
+            int changed = 0;
+            for (int column = 0; column < values.length; column++) {
+                if (!Objects.equals(values[column], original[column])) changed |= 1 << column;
+            }
+            return changed;
+        }
+    }
+}
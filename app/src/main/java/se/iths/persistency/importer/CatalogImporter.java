@@ -0,0 +1,195 @@
+package se.iths.persistency.importer;
+
+import se.iths.persistency.BatchResult;
+import se.iths.persistency.CRUDInterface;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.ToLongFunction;
+
+/**
+ * Loads artists, albums and tracks from an {@link ImportSource} through the
+ * DAOs' createAll. Tables are loaded in FK order, each one parsed on the
+ * calling thread and inserted in batches by a pool of writers, so parsing and
+ * several batched inserts run at the same time. At most two batches per
+ * writer are in flight, so memory use doesn't grow with the input size,
+ * except for the source to database id maps of artists and albums that the
+ * child rows are resolved through.
+ * <p>
+ * Only the columns the model holds are imported. A track keeps its name and
+ * album, but Milliseconds, Bytes, UnitPrice, MediaTypeId, GenreId and
+ * Composer are replaced by TrackDAO's defaults, so reseeding a database from
+ * a Chinook dump this way loses them. Load the dump itself when they matter.
+ */
+public class CatalogImporter {
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+    public static final int DEFAULT_WRITERS = 4;
+    private final ArtistDAO artistDAO;
+    private final AlbumDAO albumDAO;
+    private final TrackDAO trackDAO;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int writers = DEFAULT_WRITERS;
+
+    private interface RowMapper<T> {
+        // Returns null to reject the row
+        T map(ImportRow row);
+    }
+
+    public CatalogImporter(ArtistDAO artistDAO, AlbumDAO albumDAO, TrackDAO trackDAO) {
+        this.artistDAO = artistDAO;
+        this.albumDAO = albumDAO;
+        this.trackDAO = trackDAO;
+    }
+
+    public CatalogImporter() {
+        this(new ArtistDAO(), new AlbumDAO(), new TrackDAO());
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getWriters() {
+        return writers;
+    }
+
+    public void setWriters(int writers) {
+        this.writers = writers;
+    }
+
+    /**
+     * Imports a MySQL dump like db_auto.sql, or a directory of CSV files, into
+     * the database ConnectionHandler points at. Track columns beyond name and
+     * album are not carried over.
+     */
+    public static void main(String[] args) throws IOException, SQLException {
+        Path path = Path.of(args.length > 0 ? args[0] : "db_auto.sql");
+        ImportSource source = Files.isDirectory(path) ? new CsvSource(path) : new SqlInsertSource(path);
+        System.out.println(new CatalogImporter().importFrom(source));
+    }
+
+    public ImportReport importFrom(ImportSource source) throws IOException, SQLException {
+        ImportReport report = new ImportReport();
+        Map<Long, Long> artistIds = new ConcurrentHashMap<>();
+        Map<Long, Long> albumIds = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        long start = System.nanoTime();
+        try {
+            load(source, "Artist", "ArtistId", artistDAO, executor, report, artistIds,
+                    artist -> artist.getArtistId() == null ? 0L : artist.getArtistId(),
+                    row -> new Artist(row.get("Name")));
+            load(source, "Album", "AlbumId", albumDAO, executor, report, albumIds,
+                    album -> album.getAlbumId() == null ? 0L : album.getAlbumId(), row -> {
+                Long artistId = artistIds.get(row.getLong("ArtistId"));
+                return artistId == null ? null : new Album(row.get("Title"), artistId);
+            });
+            load(source, "Track", "TrackId", trackDAO, executor, report, null, null, row -> {
+                Long albumId = albumIds.get(row.getLong("AlbumId"));
+                return albumId == null ? null : new Track(row.get("Name"), albumId);
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    // Reads one table and waits for all of its batches, so child tables only
+    // start once every parent id is known
+    private <T> void load(ImportSource source, String table, String idColumn, CRUDInterface<T> dao,
+                          ExecutorService executor, ImportReport report,
+                          Map<Long, Long> idMap, ToLongFunction<T> idOf, RowMapper<T> mapper) throws IOException, SQLException {
+        Semaphore inFlight = new Semaphore(writers * 2);
+        List<Future<?>> batches = new ArrayList<>();
+        try (ImportSource.RowReader reader = source.open(table, idColumn)) {
+            List<T> batch = new ArrayList<>(batchSize);
+            long[] sourceIds = new long[batchSize];
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                T object = mapper.map(row);
+                if (object == null) {
+                    report.addRejected(table, 1);
+                    continue;
+                }
+                sourceIds[batch.size()] = row.getSourceId();
+                batch.add(object);
+                if (batch.size() == batchSize) {
+                    batches.add(submit(table, dao, batch, sourceIds, executor, inFlight, report, idMap, idOf));
+                    awaitDone(batches);
+                    batch = new ArrayList<>(batchSize);
+                    sourceIds = new long[batchSize];
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(submit(table, dao, batch, sourceIds, executor, inFlight, report, idMap, idOf));
+            }
+            for (Future<?> future : batches) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Import of " + table + " was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw new SQLException("Import of " + table + " failed", e.getCause());
+        }
+    }
+
+    // Drops finished batches, rethrowing their failure if they had one
+    private static void awaitDone(List<Future<?>> batches) throws InterruptedException, ExecutionException {
+        Iterator<Future<?>> it = batches.iterator();
+        while (it.hasNext()) {
+            Future<?> future = it.next();
+            if (future.isDone()) {
+                future.get();
+                it.remove();
+            }
+        }
+    }
+
+    private <T> Future<?> submit(String table, CRUDInterface<T> dao, List<T> batch, long[] sourceIds,
+                                 ExecutorService executor, Semaphore inFlight, ImportReport report,
+                                 Map<Long, Long> idMap, ToLongFunction<T> idOf) throws InterruptedException {
+        inFlight.acquire();
+        return executor.submit(() -> {
+            try {
+                BatchResult<T> result = dao.createAll(batch);
+                report.addImported(table, result.getSucceeded().size());
+                for (BatchResult.Failure<T> failure : result.getFailures()) {
+                    report.addRejected(table, failure.getBatch().size());
+                }
+                if (idMap != null) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        long id = idOf.applyAsLong(batch.get(i));
+                        if (id > 0L) idMap.put(sourceIds[i], id);
+                    }
+                }
+                return null;
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+}
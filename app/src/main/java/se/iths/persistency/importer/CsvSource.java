@@ -0,0 +1,89 @@
+package se.iths.persistency.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads one CSV file per table from a directory, e.g. Artist.csv, with a
+ * header row naming the columns. Fields may be quoted with " and contain
+ * commas, "" escapes and line breaks. A missing id column makes the row
+ * number the source id.
+ */
+public class CsvSource implements ImportSource {
+    private final Path directory;
+
+    public CsvSource(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public RowReader open(String table, String idColumn) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(directory.resolve(table + ".csv"), StandardCharsets.UTF_8);
+        String[] header = readRecord(reader);
+        String[] columns = header == null ? new String[0] : header;
+        return new RowReader() {
+            long position;
+
+            @Override
+            public ImportRow next() throws IOException {
+                String[] values;
+                do {
+                    values = readRecord(reader);
+                    if (values == null) return null;
+                } while (values.length == 1 && values[0] == null);
+                position++;
+                return new ImportRow(ImportRow.sourceId(columns, values, idColumn, position), columns, values);
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    // Returns the fields of the next record, empty fields as null, or null at the end of the file
+    static String[] readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) return null;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) break;
+                line = reader.readLine();
+                if (line == null) throw new IOException("Unterminated quoted field");
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.length() == 0 ? null : field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.length() == 0 ? null : field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,61 @@
+package se.iths.persistency.importer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rows imported and rejected per table, and the overall rate.
+ */
+public class ImportReport {
+    private final Map<String, AtomicLong> imported = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> rejected = new LinkedHashMap<>();
+    private long elapsedNanos;
+
+    synchronized void addImported(String table, long rows) {
+        imported.computeIfAbsent(table, t -> new AtomicLong()).addAndGet(rows);
+    }
+
+    synchronized void addRejected(String table, long rows) {
+        rejected.computeIfAbsent(table, t -> new AtomicLong()).addAndGet(rows);
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public synchronized long getImported(String table) {
+        AtomicLong rows = imported.get(table);
+        return rows == null ? 0L : rows.get();
+    }
+
+    /**
+     * Rows that failed to insert or referenced a parent that wasn't imported.
+     */
+    public synchronized long getRejected(String table) {
+        AtomicLong rows = rejected.get(table);
+        return rows == null ? 0L : rows.get();
+    }
+
+    public synchronized long getImportedTotal() {
+        return imported.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0L ? 0.0 : getImportedTotal() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (String table : imported.keySet()) {
+            sb.append(String.format("%s: %d imported, %d rejected%n", table, getImported(table), getRejected(table)));
+        }
+        sb.append(String.format("%d rows in %d ms (%.0f rows/s)", getImportedTotal(), getElapsedMillis(), getRowsPerSecond()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package se.iths.persistency.importer;
+
+/**
+ * One parsed row of an import source. Values are looked up by column name,
+ * ignoring case, and are null for SQL NULL or empty CSV fields.
+ */
+public class ImportRow {
+    private final long sourceId;
+    private final String[] columns;
+    private final String[] values;
+
+    ImportRow(long sourceId, String[] columns, String[] values) {
+        this.sourceId = sourceId;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * The row's id in the source, or its 1-based position when the source
+     * leaves ids to AUTO_INCREMENT like db_auto.sql does.
+     */
+    public long getSourceId() {
+        return sourceId;
+    }
+
+    public String get(String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(column)) return i < values.length ? values[i] : null;
+        }
+        return null;
+    }
+
+    public long getLong(String column) {
+        String value = get(column);
+        return value == null ? 0L : Long.parseLong(value.trim());
+    }
+
+    static long sourceId(String[] columns, String[] values, String idColumn, long position) {
+        for (int i = 0; i < columns.length && i < values.length; i++) {
+            if (columns[i].equalsIgnoreCase(idColumn) && values[i] != null) return Long.parseLong(values[i].trim());
+        }
+        return position;
+    }
+}
@@ -0,0 +1,26 @@
+package se.iths.persistency.importer;
+
+import java.io.IOException;
+
+/**
+ * Streams the rows of one table at a time. Sources are read incrementally so
+ * only the row being parsed is held in memory.
+ */
+public interface ImportSource {
+
+    interface RowReader extends AutoCloseable {
+        /**
+         * Returns the next row, or null when the table has no more rows.
+         */
+        ImportRow next() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * @param table   e.g. "Artist"
+     * @param idColumn the table's primary key column, e.g. "ArtistId"
+     */
+    RowReader open(String table, String idColumn) throws IOException;
+}
@@ -0,0 +1,100 @@
+package se.iths.persistency.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the single row INSERT statements of a MySQL dump like db_auto.sql,
+ * e.g. {@code INSERT INTO `Album` (`Title`, `ArtistId`) VALUES (N'Let There Be Rock', 1);}.
+ * Each table is read in its own pass over the file, skipping other statements.
+ */
+public class SqlInsertSource implements ImportSource {
+    private final Path script;
+
+    public SqlInsertSource(Path script) {
+        this.script = script;
+    }
+
+    @Override
+    public RowReader open(String table, String idColumn) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8);
+        String prefix = "INSERT INTO `" + table + "`";
+        return new RowReader() {
+            long position;
+
+            @Override
+            public ImportRow next() throws IOException {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith(prefix)) continue;
+                    int values = line.indexOf(" VALUES ");
+                    if (values < 0) throw new IOException("Unsupported INSERT: " + line);
+                    String[] columns = parseColumns(line.substring(prefix.length(), values));
+                    String[] row = parseValues(line, values + " VALUES ".length());
+                    position++;
+                    return new ImportRow(ImportRow.sourceId(columns, row, idColumn, position), columns, row);
+                }
+                return null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    private static String[] parseColumns(String list) {
+        String[] columns = list.trim().replaceAll("^\\(|\\)$", "").split(",");
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = columns[i].trim().replace("`", "");
+        }
+        return columns;
+    }
+
+    // Values are numbers, NULL or quoted strings with an optional N prefix and '' escapes
+    static String[] parseValues(String line, int from) throws IOException {
+        List<String> values = new ArrayList<>();
+        int i = line.indexOf('(', from) + 1;
+        if (i == 0) throw new IOException("Missing VALUES list: " + line);
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == ' ' || c == ',') {
+                i++;
+            } else if (c == ')') {
+                return values.toArray(new String[0]);
+            } else if (c == '\'' || (c == 'N' && i + 1 < line.length() && line.charAt(i + 1) == '\'')) {
+                if (c == 'N') i++;
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= line.length()) throw new IOException("Unterminated string: " + line);
+                    char s = line.charAt(i++);
+                    if (s == '\'') {
+                        if (i < line.length() && line.charAt(i) == '\'') {
+                            value.append('\'');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(s);
+                    }
+                }
+                values.add(value.toString());
+            } else {
+                int end = i;
+                while (end < line.length() && line.charAt(end) != ',' && line.charAt(end) != ')') end++;
+                String value = line.substring(i, end).trim();
+                values.add(value.equalsIgnoreCase("NULL") ? null : value);
+                i = end;
+            }
+        }
+        throw new IOException("Unterminated VALUES list: " + line);
+    }
+}
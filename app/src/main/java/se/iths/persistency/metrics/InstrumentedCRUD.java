@@ -0,0 +1,121 @@
+package se.iths.persistency.metrics;
+
+import se.iths.persistency.BatchResult;
+import se.iths.persistency.CRUDInterface;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Reports the latency, rows and errors of every call on the wrapped DAO to
+ * {@link Metrics}. Methods outside CRUDInterface can be measured with
+ * {@link #call(String, Call, ToLongFunction)}, e.g.
+ * {@code tracks.call("findByAlbumId", () -> trackDAO.findByAlbumId(id), Collection::size)}.
+ */
+public class InstrumentedCRUD<T> implements CRUDInterface<T> {
+    private final CRUDInterface<T> dao;
+    private final String name;
+
+    public interface Call<R, E extends Exception> {
+        R call() throws E;
+    }
+
+    public InstrumentedCRUD(CRUDInterface<T> dao, String name) {
+        this.dao = dao;
+        this.name = name;
+    }
+
+    public InstrumentedCRUD(CRUDInterface<T> dao) {
+        this(dao, dao.getClass().getSimpleName());
+    }
+
+    @Override
+    public Collection<T> findAll() throws SQLException {
+        return measure("findAll", dao::findAll, Collection::size, none());
+    }
+
+    /**
+     * The time to open the stream is reported right away, the rows read when
+     * the stream is closed.
+     */
+    @Override
+    public Stream<T> streamAll() throws SQLException {
+        Stream<T> stream = measure("streamAll", dao::streamAll, none(), none());
+        if (!Metrics.isEnabled()) return stream;
+        LongAdder rows = new LongAdder();
+        long start = System.nanoTime();
+        return stream.peek(row -> rows.increment())
+                .onClose(() -> Metrics.operation(name, "streamAll.read", System.nanoTime() - start, rows.sum(), 0L, null));
+    }
+
+    @Override
+    public Optional<T> findById(long id) throws SQLException {
+        return measure("findById", () -> dao.findById(id), found -> found.isPresent() ? 1L : 0L, none());
+    }
+
+    @Override
+    public Optional<T> create(T object) throws SQLException {
+        return measure("create", () -> dao.create(object), none(), created -> created.isPresent() ? 1L : 0L);
+    }
+
+    @Override
+    public Optional<T> update(T object) throws SQLException {
+        return measure("update", () -> dao.update(object), none(), updated -> updated.isPresent() ? 1L : 0L);
+    }
+
+    @Override
+    public boolean delete(T object) throws Exception {
+        return measure("delete", () -> dao.delete(object), none(), deleted -> deleted ? 1L : 0L);
+    }
+
+    @Override
+    public boolean deleteById(long id) throws SQLException {
+        return measure("deleteById", () -> dao.deleteById(id), none(), deleted -> deleted ? 1L : 0L);
+    }
+
+    @Override
+    public BatchResult<T> createAll(Collection<T> objects) throws SQLException {
+        return measure("createAll", () -> dao.createAll(objects), none(), BatchResult::getAffectedRows);
+    }
+
+    @Override
+    public BatchResult<T> updateAll(Collection<T> objects) throws SQLException {
+        return measure("updateAll", () -> dao.updateAll(objects), none(), BatchResult::getAffectedRows);
+    }
+
+    @Override
+    public BatchResult<T> deleteAll(Collection<T> objects) throws SQLException {
+        return measure("deleteAll", () -> dao.deleteAll(objects), none(), BatchResult::getAffectedRows);
+    }
+
+    /**
+     * Measures a read that isn't part of CRUDInterface under this DAO's name.
+     */
+    public <R, E extends Exception> R call(String operation, Call<R, E> call, ToLongFunction<R> rowsRead) throws E {
+        return measure(operation, call, rowsRead, none());
+    }
+
+    private <R, E extends Exception> R measure(String operation, Call<R, E> call,
+                                                ToLongFunction<R> rowsRead, ToLongFunction<R> rowsWritten) throws E {
+        if (!Metrics.isEnabled()) return call.call();
+        long start = System.nanoTime();
+        R result;
+        try {
+            result = call.call();
+        } catch (Exception | Error e) {
+            Metrics.operation(name, operation, System.nanoTime() - start, 0L, 0L, e);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        Metrics.operation(name, operation, nanos, rowsRead.applyAsLong(result), rowsWritten.applyAsLong(result), null);
+        return result;
+    }
+
+    private static <R> ToLongFunction<R> none() {
+        return result -> 0L;
+    }
+}
@@ -0,0 +1,48 @@
+package se.iths.persistency.metrics;
+
+import java.util.Arrays;
+import java.util.ServiceLoader;
+
+/**
+ * Dispatches measurements to the attached listeners. While none are attached
+ * callers skip timing altogether, so the only cost is a volatile read.
+ */
+public class Metrics {
+    private static final MetricsListener[] NONE = new MetricsListener[0];
+    private static volatile MetricsListener[] listeners = NONE;
+
+    static {
+        for (MetricsListener listener : ServiceLoader.load(MetricsListener.class)) {
+            addListener(listener);
+        }
+    }
+
+    private Metrics() {}
+
+    public static synchronized void addListener(MetricsListener listener) {
+        MetricsListener[] current = listeners;
+        MetricsListener[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = listener;
+        listeners = added;
+    }
+
+    public static synchronized void removeListener(MetricsListener listener) {
+        listeners = Arrays.stream(listeners).filter(l -> l != listener).toArray(MetricsListener[]::new);
+    }
+
+    public static boolean isEnabled() {
+        return listeners.length > 0;
+    }
+
+    public static void operation(String dao, String operation, long nanos, long rowsRead, long rowsWritten, Throwable error) {
+        for (MetricsListener listener : listeners) {
+            listener.onOperation(dao, operation, nanos, rowsRead, rowsWritten, error);
+        }
+    }
+
+    public static void connectionAcquired(long nanos, Throwable error) {
+        for (MetricsListener listener : listeners) {
+            listener.onConnectionAcquired(nanos, error);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package se.iths.persistency.metrics;
+
+/**
+ * Receives one callback per DAO operation and per connection borrowed from
+ * the pool. Listeners are called on the thread that made the call, so they
+ * must be thread safe and quick. Implementations listed in
+ * META-INF/services/se.iths.persistency.metrics.MetricsListener are attached
+ * automatically, others with {@link Metrics#addListener(MetricsListener)}.
+ */
+public interface MetricsListener {
+
+    /**
+     * @param dao       name the DAO was instrumented with, e.g. "TrackDAO"
+     * @param operation method name, e.g. "findById"
+     * @param error     the exception the call ended with, or null
+     */
+    void onOperation(String dao, String operation, long nanos, long rowsRead, long rowsWritten, Throwable error);
+
+    default void onConnectionAcquired(long nanos, Throwable error) {}
+}
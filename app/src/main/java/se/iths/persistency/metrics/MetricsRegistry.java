@@ -0,0 +1,113 @@
+package se.iths.persistency.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Listener keeping per DAO operation stats and connection acquire times. The
+ * stats can be read directly, through JMX or as plain text in the Prometheus
+ * exposition format, either from {@link #scrape()} or over HTTP.
+ */
+public class MetricsRegistry implements MetricsListener, MetricsRegistryMXBean {
+    public static final String OBJECT_NAME = "se.iths.persistency:type=MetricsRegistry";
+    private static final double[] PERCENTILES = {50.0, 99.0, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.99", "0.999"};
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final OperationStats connectionAcquire = new OperationStats();
+
+    @Override
+    public void onOperation(String dao, String operation, long nanos, long rowsRead, long rowsWritten, Throwable error) {
+        operations.computeIfAbsent(dao + "." + operation, key -> new OperationStats())
+                .record(nanos, rowsRead, rowsWritten, error);
+    }
+
+    @Override
+    public void onConnectionAcquired(long nanos, Throwable error) {
+        connectionAcquire.record(nanos, 0L, 0L, error);
+    }
+
+    /**
+     * Stats keyed by "dao.operation", e.g. "TrackDAO.findById".
+     */
+    public Map<String, OperationStats> getOperations() {
+        return new TreeMap<>(operations);
+    }
+
+    public OperationStats getConnectionAcquire() {
+        return connectionAcquire;
+    }
+
+    @Override
+    public long getCalls() {
+        return operations.values().stream().mapToLong(OperationStats::getCalls).sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return operations.values().stream().mapToLong(OperationStats::getErrors).sum();
+    }
+
+    @Override
+    public long getConnectionAcquireP99Micros() {
+        return connectionAcquire.getLatencyMicros(99.0);
+    }
+
+    @Override
+    public String scrape() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, OperationStats> entry : getOperations().entrySet()) {
+            int dot = entry.getKey().indexOf('.');
+            String labels = String.format("dao=\"%s\",operation=\"%s\"",
+                    entry.getKey().substring(0, dot), entry.getKey().substring(dot + 1));
+            append(sb, "dao", labels, entry.getValue());
+        }
+        append(sb, "connection_acquire", "", connectionAcquire);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String metric, String labels, OperationStats stats) {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            sb.append(String.format("%s_latency_micros{%s%squantile=\"%s\"} %d%n",
+                    metric, labels, separator, QUANTILES[i], stats.getLatencyMicros(PERCENTILES[i])));
+        }
+        sb.append(String.format("%s_calls_total{%s} %d%n", metric, labels, stats.getCalls()));
+        sb.append(String.format("%s_errors_total{%s} %d%n", metric, labels, stats.getErrors()));
+        if (!labels.isEmpty()) {
+            sb.append(String.format("%s_rows_read_total{%s} %d%n", metric, labels, stats.getRowsRead()));
+            sb.append(String.format("%s_rows_written_total{%s} %d%n", metric, labels, stats.getRowsWritten()));
+        }
+    }
+
+    public void registerMBean() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * Serves {@link #scrape()} at http://host:port/metrics. Stop the returned
+     * server to close the endpoint.
+     */
+    public HttpServer startHttpEndpoint(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
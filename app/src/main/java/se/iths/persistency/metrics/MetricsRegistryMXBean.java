@@ -0,0 +1,11 @@
+package se.iths.persistency.metrics;
+
+public interface MetricsRegistryMXBean {
+    long getCalls();
+
+    long getErrors();
+
+    long getConnectionAcquireP99Micros();
+
+    String scrape();
+}
@@ -0,0 +1,48 @@
+package se.iths.persistency.metrics;
+
+import se.iths.persistency.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of one DAO operation.
+ */
+public class OperationStats {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+
+    void record(long nanos, long read, long written, Throwable error) {
+        latency.record(nanos);
+        calls.increment();
+        if (error != null) errors.increment();
+        if (read != 0L) rowsRead.add(read);
+        if (written != 0L) rowsWritten.add(written);
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    /**
+     * Upper bound in microseconds of the bucket holding the given percentile
+     * (0-100) of the calls so far.
+     */
+    public long getLatencyMicros(double percentile) {
+        return LatencyHistogram.percentileMicros(latency.snapshot(), percentile);
+    }
+}
@@ -1,13 +1,14 @@
 package se.iths.persistency.model;
 
+import java.sql.SQLException;
 import java.util.Collection;
-import java.util.HashMap;
 
 public class Album {
     Long albumId;
     String title;
     Long artistId;
-    HashMap <Long, Track> tracks = new HashMap<>();
+    final LongArrayMap<Track> tracks = new LongArrayMap<>();
+    private volatile Loader<Track> trackLoader;
 
     public Album(String title, Long artistId) {
         this.title = title;
@@ -39,40 +40,82 @@ public class Album {
     }
 
     public Collection<Track> getTracks() {
+        loadTracks();
         return tracks.values();
     }
 
+    public Track getTrack(long trackId) {
+        loadTracks();
+        return tracks.get(trackId);
+    }
+
     public void add(Track track) {
-        tracks = tracks==null?new HashMap<>():tracks;
+        loadTracks();
         tracks.put(track.trackId, track);
     }
 
-    public void addAll(Collection<Track> albumTracks) {
-        tracks = new HashMap<>();
-        albumTracks.forEach(track -> tracks.put(track.trackId, track));
+    // Holds the lock loadTracks holds, so a load in progress can't overwrite the new tracks
+    public synchronized void addAll(Collection<Track> albumTracks) {
+        trackLoader = null;
+        long[] ids = new long[albumTracks.size()];
+        Object[] children = new Object[ids.length];
+        int i = 0;
+        for (Track track : albumTracks) {
+            ids[i] = track.trackId;
+            children[i++] = track;
+        }
+        tracks.replaceAll(ids, children);
     }
 
     public void replace(Track track) {
+        loadTracks();
         tracks.replace(track.trackId, track);
     }
 
     public void remove(Track track) {
-        if (tracks==null) return;
+        loadTracks();
         tracks.remove(track.getTrackId());
     }
 
-    public void removeAll() {
-        if (tracks==null) return;
+    public synchronized void removeAll() {
+        trackLoader = null;
         tracks.clear();
     }
 
+    /**
+     * Makes the tracks load on first access instead of being set up front.
+     */
+    public synchronized void setTrackLoader(Loader<Track> loader) {
+        trackLoader = loader;
+    }
+
+    public boolean isTracksLoaded() {
+        return trackLoader == null;
+    }
+
+    private void loadTracks() {
+        if (trackLoader == null) return;
+        synchronized (this) {
+            Loader<Track> loader = trackLoader;
+            if (loader == null) return;
+            try {
+                loader.load().forEach(track -> tracks.putIfAbsent(track.trackId, track));
+            } catch (SQLException e) {
+                throw new RuntimeException("Error loading tracks of album " + albumId, e);
+            }
+            trackLoader = null;
+        }
+    }
+
     public String toString() {
         StringBuilder sb = new StringBuilder(String.valueOf(albumId));
         sb.append(": ");
         sb.append(title);
-        if (!tracks.isEmpty()) {
+        // Only what is loaded already, printing must not query the database
+        Collection<Track> loaded = tracks.values();
+        if (!loaded.isEmpty()) {
             sb.append("\n\t\t\tTracks:\n");
-            for(Track track : tracks.values()) {
+            for(Track track : loaded) {
                 sb.append("\t\t\t\t");
                 sb.append(track);
                 sb.append("\n");
@@ -1,12 +1,13 @@
 package se.iths.persistency.model;
 
+import java.sql.SQLException;
 import java.util.Collection;
-import java.util.HashMap;
 
 public class Artist {
     Long artistId;
     String name;
-    HashMap<Long, Album> albums = new HashMap<>();
+    final LongArrayMap<Album> albums = new LongArrayMap<>();
+    private volatile Loader<Album> albumLoader;
 
     public Artist(String name) {
         this.name = name;
@@ -29,41 +30,83 @@ public class Artist {
     }
 
     public Collection<Album> getAlbums() {
+        loadAlbums();
         return albums.values();
     }
 
+    public Album getAlbum(long albumId) {
+        loadAlbums();
+        return albums.get(albumId);
+    }
+
     public void add(Album album) {
-        albums = albums==null?new HashMap<Long, Album>():albums;
+        loadAlbums();
         albums.put(album.albumId, album);
     }
 
-    public void addAll(Collection<Album> artistAlbums) {
-        albums = new HashMap<>();
-        artistAlbums.forEach(album -> albums.put(album.albumId, album));
+    // Holds the lock loadAlbums holds, so a load in progress can't overwrite the new albums
+    public synchronized void addAll(Collection<Album> artistAlbums) {
+        albumLoader = null;
+        long[] ids = new long[artistAlbums.size()];
+        Object[] children = new Object[ids.length];
+        int i = 0;
+        for (Album album : artistAlbums) {
+            ids[i] = album.albumId;
+            children[i++] = album;
+        }
+        albums.replaceAll(ids, children);
     }
 
     public void replace(Album album) {
+        loadAlbums();
         albums.replace(album.albumId, album);
     }
 
     public void remove(Album album) {
-        if (albums==null) return;
+        loadAlbums();
         albums.remove(album.getAlbumId());
     }
 
-    public void removeAll() {
-        if (albums==null) return;
+    public synchronized void removeAll() {
+        albumLoader = null;
         albums.clear();
     }
 
+    /**
+     * Makes the albums load on first access instead of being set up front.
+     */
+    public synchronized void setAlbumLoader(Loader<Album> loader) {
+        albumLoader = loader;
+    }
+
+    public boolean isAlbumsLoaded() {
+        return albumLoader == null;
+    }
+
+    private void loadAlbums() {
+        if (albumLoader == null) return;
+        synchronized (this) {
+            Loader<Album> loader = albumLoader;
+            if (loader == null) return;
+            try {
+                loader.load().forEach(album -> albums.putIfAbsent(album.albumId, album));
+            } catch (SQLException e) {
+                throw new RuntimeException("Error loading albums of artist " + artistId, e);
+            }
+            albumLoader = null;
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(String.valueOf(artistId));
         sb.append(": ");
         sb.append(name);
-        if (!albums.isEmpty()) {
+        // Only what is loaded already, printing must not query the database
+        Collection<Album> loaded = albums.values();
+        if (!loaded.isEmpty()) {
             sb.append("\n\tAlbums:\n");
-            for(Album album : albums.values()) {
+            for(Album album : loaded) {
                 sb.append("\t\t");
                 sb.append(album);
                 sb.append("\n");
@@ -0,0 +1,41 @@
+package se.iths.persistency.model;
+
+/**
+ * Row of the CatalogChange table, written by triggers whenever an Artist,
+ * Album or Track row is updated or deleted. parentId is the ArtistId of an
+ * album or the AlbumId of a track as it was before the change, 0 for artists.
+ */
+public class CatalogChange {
+    private final long changeId;
+    private final String tableName;
+    private final long rowId;
+    private final long parentId;
+
+    public CatalogChange(long changeId, String tableName, long rowId, long parentId) {
+        this.changeId = changeId;
+        this.tableName = tableName;
+        this.rowId = rowId;
+        this.parentId = parentId;
+    }
+
+    public long getChangeId() {
+        return changeId;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getRowId() {
+        return rowId;
+    }
+
+    public long getParentId() {
+        return parentId;
+    }
+
+    @Override
+    public String toString() {
+        return changeId + ": " + tableName + " " + rowId;
+    }
+}
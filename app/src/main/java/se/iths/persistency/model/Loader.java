@@ -0,0 +1,11 @@
+package se.iths.persistency.model;
+
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Loads the children of a lazily loaded {@link Artist} or {@link Album}.
+ */
+public interface Loader<T> {
+    Collection<T> load() throws SQLException;
+}
@@ -0,0 +1,160 @@
+package se.iths.persistency.model;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Map from primitive long ids to children, kept as a sorted long[] of keys
+ * with a parallel array of values. Lookups are a binary search without boxing,
+ * and an entry costs a long and a reference instead of a boxed Long and a
+ * map node. Writes copy the arrays and publish them in one volatile write, so
+ * reads never lock and always see a consistent snapshot. That suits the
+ * model's child collections, which are read far more often than changed and
+ * hold tens of entries rather than thousands.
+ */
+class LongArrayMap<V> {
+    private static final Table EMPTY = new Table(new long[0], new Object[0]);
+    private volatile Table table = EMPTY;
+
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(long[] keys, Object[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        Table current = table;
+        int index = Arrays.binarySearch(current.keys, key);
+        return index >= 0 ? (V) current.values[index] : null;
+    }
+
+    int size() {
+        return table.keys.length;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    synchronized void put(long key, V value) {
+        Table current = table;
+        int index = Arrays.binarySearch(current.keys, key);
+        if (index >= 0) {
+            Object[] values = current.values.clone();
+            values[index] = value;
+            table = new Table(current.keys, values);
+            return;
+        }
+        int insert = -index - 1;
+        int size = current.keys.length;
+        long[] keys = new long[size + 1];
+        Object[] values = new Object[size + 1];
+        System.arraycopy(current.keys, 0, keys, 0, insert);
+        System.arraycopy(current.values, 0, values, 0, insert);
+        keys[insert] = key;
+        values[insert] = value;
+        System.arraycopy(current.keys, insert, keys, insert + 1, size - insert);
+        System.arraycopy(current.values, insert, values, insert + 1, size - insert);
+        table = new Table(keys, values);
+    }
+
+    synchronized void putIfAbsent(long key, V value) {
+        if (Arrays.binarySearch(table.keys, key) < 0) put(key, value);
+    }
+
+    synchronized void replace(long key, V value) {
+        if (Arrays.binarySearch(table.keys, key) >= 0) put(key, value);
+    }
+
+    synchronized void remove(long key) {
+        Table current = table;
+        int index = Arrays.binarySearch(current.keys, key);
+        if (index < 0) return;
+        int size = current.keys.length;
+        long[] keys = new long[size - 1];
+        Object[] values = new Object[size - 1];
+        System.arraycopy(current.keys, 0, keys, 0, index);
+        System.arraycopy(current.values, 0, values, 0, index);
+        System.arraycopy(current.keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(current.values, index + 1, values, index, size - index - 1);
+        table = new Table(keys, values);
+    }
+
+    /**
+     * Replaces all entries at once, sorting them a single time instead of
+     * inserting one by one. Later duplicates of a key win.
+     */
+    synchronized void replaceAll(long[] keys, Object[] values) {
+        if (isStrictlyAscending(keys)) {
+            table = new Table(keys.clone(), values.clone());
+            return;
+        }
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+        long[] sortedKeys = new long[keys.length];
+        Object[] sortedValues = new Object[keys.length];
+        int size = 0;
+        for (int i : order) {
+            if (size > 0 && sortedKeys[size - 1] == keys[i]) {
+                sortedValues[size - 1] = values[i];
+            } else {
+                sortedKeys[size] = keys[i];
+                sortedValues[size++] = values[i];
+            }
+        }
+        table = new Table(Arrays.copyOf(sortedKeys, size), Arrays.copyOf(sortedValues, size));
+    }
+
+    private static boolean isStrictlyAscending(long[] keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i - 1] >= keys[i]) return false;
+        }
+        return true;
+    }
+
+    synchronized void clear() {
+        table = EMPTY;
+    }
+
+    /**
+     * Read only view of the values in key order. Each iteration walks the
+     * snapshot current when it started.
+     */
+    Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                Object[] values = table.values;
+                return new Iterator<V>() {
+                    int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public V next() {
+                        if (next >= values.length) throw new NoSuchElementException();
+                        return (V) values[next++];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LongArrayMap.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package se.iths.persistency.search;
+
+/**
+ * The kinds of entities a {@link SearchIndex} holds, parents before children.
+ */
+public enum EntityType {
+    ARTIST, ALBUM, TRACK
+}
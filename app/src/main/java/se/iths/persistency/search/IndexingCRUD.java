@@ -0,0 +1,112 @@
+package se.iths.persistency.search;
+
+import se.iths.persistency.BatchResult;
+import se.iths.persistency.CRUDInterface;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a {@link SearchIndex} in step with the writes made through a DAO.
+ * Created and updated entities are put in the index once the DAO returns,
+ * deleted ones are removed with everything indexed below them. Writes that
+ * bypass the wrapper must update the index themselves.
+ */
+public class IndexingCRUD<T> implements CRUDInterface<T> {
+    private final CRUDInterface<T> dao;
+    private final SearchIndex index;
+    private final EntityType type;
+    private final ToLongFunction<T> idOf;
+    private final BiConsumer<SearchIndex, T> put;
+
+    private IndexingCRUD(CRUDInterface<T> dao, SearchIndex index, EntityType type, ToLongFunction<T> idOf, BiConsumer<SearchIndex, T> put) {
+        this.dao = dao;
+        this.index = index;
+        this.type = type;
+        this.idOf = idOf;
+        this.put = put;
+    }
+
+    public static IndexingCRUD<Artist> artists(CRUDInterface<Artist> dao, SearchIndex index) {
+        return new IndexingCRUD<>(dao, index, EntityType.ARTIST, Artist::getArtistId, SearchIndex::put);
+    }
+
+    public static IndexingCRUD<Album> albums(CRUDInterface<Album> dao, SearchIndex index) {
+        return new IndexingCRUD<>(dao, index, EntityType.ALBUM, Album::getAlbumId, SearchIndex::put);
+    }
+
+    public static IndexingCRUD<Track> tracks(CRUDInterface<Track> dao, SearchIndex index) {
+        return new IndexingCRUD<>(dao, index, EntityType.TRACK, Track::getTrackId, SearchIndex::put);
+    }
+
+    @Override
+    public Collection<T> findAll() throws SQLException {
+        return dao.findAll();
+    }
+
+    @Override
+    public Stream<T> streamAll() throws SQLException {
+        return dao.streamAll();
+    }
+
+    @Override
+    public Optional<T> findById(long id) throws SQLException {
+        return dao.findById(id);
+    }
+
+    @Override
+    public Optional<T> create(T object) throws SQLException {
+        Optional<T> created = dao.create(object);
+        created.ifPresent(o -> put.accept(index, o));
+        return created;
+    }
+
+    @Override
+    public Optional<T> update(T object) throws SQLException {
+        Optional<T> updated = dao.update(object);
+        updated.ifPresent(o -> put.accept(index, o));
+        return updated;
+    }
+
+    @Override
+    public boolean delete(T object) throws Exception {
+        boolean deleted = dao.delete(object);
+        if (deleted) index.remove(type, idOf.applyAsLong(object));
+        return deleted;
+    }
+
+    @Override
+    public boolean deleteById(long id) throws SQLException {
+        boolean deleted = dao.deleteById(id);
+        if (deleted) index.remove(type, id);
+        return deleted;
+    }
+
+    @Override
+    public BatchResult<T> createAll(Collection<T> objects) throws SQLException {
+        BatchResult<T> result = dao.createAll(objects);
+        result.getSucceeded().forEach(object -> put.accept(index, object));
+        return result;
+    }
+
+    @Override
+    public BatchResult<T> updateAll(Collection<T> objects) throws SQLException {
+        BatchResult<T> result = dao.updateAll(objects);
+        result.getSucceeded().forEach(object -> put.accept(index, object));
+        return result;
+    }
+
+    @Override
+    public BatchResult<T> deleteAll(Collection<T> objects) throws SQLException {
+        BatchResult<T> result = dao.deleteAll(objects);
+        result.getSucceeded().forEach(object -> index.remove(type, idOf.applyAsLong(object)));
+        return result;
+    }
+}
@@ -0,0 +1,226 @@
+package se.iths.persistency.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Trie over the tokens of a {@link SearchIndex}. Every node counts the
+ * entries having a token that starts with the node's prefix. A node that has
+ * been completed keeps its best {@value #BEST_SIZE} entries by
+ * {@link SearchEntry#BY_RANK}, and adds and removes keep that list up to
+ * date, so completing the same prefix again costs only the entries returned.
+ * The list is rebuilt from the subtree once removals leave it less than half
+ * full, or when more entries are asked for than removals have left in it.
+ * <p>
+ * Not thread safe, the index guards it.
+ */
+class PrefixTrie {
+    static final int BEST_SIZE = 32;
+    private final Node root = new Node(null, '\0');
+    // The entries having a token in rank order, kept by the index
+    private final Function<String, Collection<SearchEntry>> postings;
+
+    PrefixTrie(Function<String, Collection<SearchEntry>> postings) {
+        this.postings = postings;
+    }
+
+    /**
+     * Call after the entry has been added to the postings of its tokens.
+     */
+    void add(SearchEntry entry) {
+        for (Node node : nodes(entry, true)) node.add(entry);
+    }
+
+    /**
+     * Call after the entry has been removed from the postings of its tokens.
+     */
+    void remove(SearchEntry entry) {
+        Set<Node> nodes = nodes(entry, false);
+        for (Node node : nodes) node.remove(entry);
+        for (Node node : nodes) {
+            if (node.count == 0 && node.parent != null) node.parent.detach(node.key);
+        }
+    }
+
+    /**
+     * The best ranked entries with a token starting with the prefix, or null
+     * when they can't be answered from a kept list.
+     */
+    List<SearchEntry> cachedTop(String prefix, int limit) {
+        Node node = find(prefix);
+        if (node == null) return Collections.emptyList();
+        if (!node.canAnswer(limit)) return null;
+        return node.top(limit);
+    }
+
+    /**
+     * Like {@link #cachedTop(String, int)}, but builds the node's list when
+     * it has none, or walks the subtree when more entries are asked for
+     * than a list keeps.
+     */
+    List<SearchEntry> top(String prefix, int limit) {
+        Node node = find(prefix);
+        if (node == null) return Collections.emptyList();
+        if (limit > BEST_SIZE) return collect(node, limit);
+        if (!node.canAnswer(limit)) {
+            List<SearchEntry> best = collect(node, BEST_SIZE);
+            node.best = best.toArray(new SearchEntry[BEST_SIZE]);
+            node.bestSize = best.size();
+            node.stale = false;
+        }
+        return node.top(limit);
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) node = node.child(prefix.charAt(i));
+        return node;
+    }
+
+    // Every node on the paths of the entry's tokens, once each, root first
+    private Set<Node> nodes(SearchEntry entry, boolean create) {
+        Set<Node> nodes = new LinkedHashSet<>();
+        nodes.add(root);
+        for (String token : entry.tokens) {
+            Node node = root;
+            for (int i = 0; i < token.length() && node != null; i++) {
+                node = create ? node.childOrCreate(token.charAt(i)) : node.child(token.charAt(i));
+                if (node != null) nodes.add(node);
+            }
+            if (create && node != null) node.token = token;
+        }
+        return nodes;
+    }
+
+    private List<SearchEntry> collect(Node from, int limit) {
+        PriorityQueue<SearchEntry> worstFirst = new PriorityQueue<>(limit + 1, SearchEntry.BY_RANK.reversed());
+        Set<SearchEntry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node> todo = new ArrayDeque<>();
+        todo.push(from);
+        while (!todo.isEmpty()) {
+            Node node = todo.pop();
+            if (node.token != null) {
+                // Anything in the best limit overall is in the first limit of its own lists
+                int taken = 0;
+                for (SearchEntry entry : postings.apply(node.token)) {
+                    if (taken++ == limit) break;
+                    if (!seen.add(entry)) continue;
+                    worstFirst.offer(entry);
+                    if (worstFirst.size() > limit) worstFirst.poll();
+                }
+            }
+            for (int i = 0; i < node.size; i++) todo.push(node.children[i]);
+        }
+        List<SearchEntry> best = new ArrayList<>(worstFirst);
+        best.sort(SearchEntry.BY_RANK);
+        return best;
+    }
+
+    private static class Node {
+        final Node parent;
+        final char key;
+        // Children sorted by key
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        int size;
+        // Set when a token ends here
+        String token;
+        int count;
+        SearchEntry[] best;
+        int bestSize;
+        boolean stale;
+
+        Node(Node parent, char key) {
+            this.parent = parent;
+            this.key = key;
+        }
+
+        Node child(char c) {
+            int at = Arrays.binarySearch(keys, 0, size, c);
+            return at >= 0 ? children[at] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int at = Arrays.binarySearch(keys, 0, size, c);
+            if (at >= 0) return children[at];
+            at = -at - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(2, size * 2));
+                children = Arrays.copyOf(children, keys.length);
+            }
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            System.arraycopy(children, at, children, at + 1, size - at);
+            keys[at] = c;
+            children[at] = new Node(this, c);
+            size++;
+            return children[at];
+        }
+
+        void detach(char c) {
+            int at = Arrays.binarySearch(keys, 0, size, c);
+            if (at < 0) return;
+            System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+            System.arraycopy(children, at + 1, children, at, size - at - 1);
+            size--;
+            children[size] = null;
+        }
+
+        // The list holds the best bestSize entries of the subtree. A newcomer
+        // ranking below all of them only belongs in it when it held them all.
+        void add(SearchEntry entry) {
+            if (best != null && !stale) {
+                int at = insertionPoint(entry);
+                boolean holdsAll = bestSize == count;
+                if (at < bestSize || (holdsAll && bestSize < BEST_SIZE)) {
+                    int moved = Math.min(bestSize, BEST_SIZE - 1) - at;
+                    System.arraycopy(best, at, best, at + 1, moved);
+                    best[at] = entry;
+                    bestSize = Math.min(bestSize + 1, BEST_SIZE);
+                }
+            }
+            count++;
+        }
+
+        void remove(SearchEntry entry) {
+            count--;
+            if (best == null || stale) return;
+            for (int i = 0; i < bestSize; i++) {
+                if (best[i] != entry) continue;
+                System.arraycopy(best, i + 1, best, i, bestSize - i - 1);
+                best[--bestSize] = null;
+                break;
+            }
+            if (bestSize < BEST_SIZE / 2 && count > bestSize) stale = true;
+        }
+
+        // Short lists only answer when the subtree has no more entries
+        boolean canAnswer(int limit) {
+            return best != null && !stale && (limit <= bestSize || bestSize == count);
+        }
+
+        List<SearchEntry> top(int limit) {
+            return new ArrayList<>(Arrays.asList(best).subList(0, Math.min(limit, bestSize)));
+        }
+
+        private int insertionPoint(SearchEntry entry) {
+            int low = 0;
+            int high = bestSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (SearchEntry.BY_RANK.compare(best[mid], entry) < 0) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package se.iths.persistency.search;
+
+import java.util.Comparator;
+
+/**
+ * An artist name, album title or track name as the {@link SearchIndex} holds
+ * it, with the id of the album or artist it belongs to.
+ */
+public class SearchEntry {
+    /**
+     * Order of completions: shortest name first, then artists before albums
+     * before tracks, then by id.
+     */
+    static final Comparator<SearchEntry> BY_RANK = Comparator
+            .comparingInt((SearchEntry entry) -> entry.name == null ? 0 : entry.name.length())
+            .thenComparing(entry -> entry.type)
+            .thenComparingLong(entry -> entry.id);
+    private final EntityType type;
+    private final long id;
+    private final String name;
+    private final long parentId;
+    // Distinct, shared with the index's posting lists
+    final String[] tokens;
+
+    SearchEntry(EntityType type, long id, String name, long parentId, String[] tokens) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.parentId = parentId;
+        this.tokens = tokens;
+    }
+
+    public EntityType getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The album id of a track, the artist id of an album and 0 for an artist.
+     */
+    public long getParentId() {
+        return parentId;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id + ": " + name;
+    }
+}
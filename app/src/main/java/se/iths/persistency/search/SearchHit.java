@@ -0,0 +1,58 @@
+package se.iths.persistency.search;
+
+import java.util.List;
+
+/**
+ * An entry found by {@link SearchIndex}, with the album and artist it belongs
+ * to, nearest first.
+ */
+public class SearchHit {
+    private final SearchEntry entry;
+    private final double score;
+    private final List<SearchEntry> parents;
+
+    SearchHit(SearchEntry entry, double score, List<SearchEntry> parents) {
+        this.entry = entry;
+        this.score = score;
+        this.parents = parents;
+    }
+
+    public SearchEntry getEntry() {
+        return entry;
+    }
+
+    public EntityType getType() {
+        return entry.getType();
+    }
+
+    public long getId() {
+        return entry.getId();
+    }
+
+    public String getName() {
+        return entry.getName();
+    }
+
+    /**
+     * Relevance of a search hit, higher is better. Completions are ordered
+     * by rank instead and score 0.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * The track's album and artist, or the album's artist. Empty for artists,
+     * and shorter when a parent isn't indexed.
+     */
+    public List<SearchEntry> getParents() {
+        return parents;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(entry.toString());
+        for (SearchEntry parent : parents) sb.append(" < ").append(parent.getName());
+        return sb.toString();
+    }
+}
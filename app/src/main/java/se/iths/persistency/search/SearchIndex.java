@@ -0,0 +1,304 @@
+package se.iths.persistency.search;
+
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index over artist names, album titles and track names. Names are
+ * split into lower case tokens with accents removed. Every token has a
+ * posting list of the entries having it, which {@link #search(String, int)}
+ * ranks by, and a path in a {@link PrefixTrie}, which
+ * {@link #complete(String, int)} finds prefixes in.
+ * <p>
+ * put replaces an entry and remove drops one with everything below it, so
+ * the index can follow the catalog one change at a time, see
+ * {@link IndexingCRUD}. Hits carry the album and artist they belong to.
+ * Searches run in parallel, changes one at a time.
+ */
+public class SearchIndex {
+    private static final Comparator<Map.Entry<SearchEntry, Double>> BY_SCORE = Map.Entry.<SearchEntry, Double>comparingByValue()
+            .reversed()
+            .thenComparing(Map.Entry.comparingByKey(SearchEntry.BY_RANK));
+    private final Map<EntityType, Map<Long, SearchEntry>> entries = new EnumMap<>(EntityType.class);
+    // Ids of the albums of an artist and the tracks of an album
+    private final Map<EntityType, Map<Long, Set<Long>>> children = new EnumMap<>(EntityType.class);
+    // Each posting list in rank order, so completions can stop at the first matches
+    private final Map<String, NavigableSet<SearchEntry>> postings = new HashMap<>();
+    private final PrefixTrie trie = new PrefixTrie(token -> postings.getOrDefault(token, Collections.emptyNavigableSet()));
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SearchIndex() {
+        for (EntityType type : EntityType.values()) {
+            entries.put(type, new HashMap<>());
+            children.put(type, new HashMap<>());
+        }
+    }
+
+    public void put(Artist artist) {
+        put(EntityType.ARTIST, artist.getArtistId(), artist.getName(), 0);
+    }
+
+    public void put(Album album) {
+        put(EntityType.ALBUM, album.getAlbumId(), album.getTitle(), album.getArtistId());
+    }
+
+    public void put(Track track) {
+        put(EntityType.TRACK, track.getTrackId(), track.getName(), track.getAlbumId());
+    }
+
+    /**
+     * Replaces the artist and everything indexed below it with the artist's
+     * albums and tracks, loading them if the artist was fetched without them.
+     */
+    public void putTree(Artist artist) {
+        lock.writeLock().lock();
+        try {
+            removeTree(EntityType.ARTIST, artist.getArtistId());
+            replace(EntityType.ARTIST, artist.getArtistId(), artist.getName(), 0);
+            for (Album album : artist.getAlbums()) {
+                replace(EntityType.ALBUM, album.getAlbumId(), album.getTitle(), album.getArtistId());
+                for (Track track : album.getTracks()) {
+                    replace(EntityType.TRACK, track.getTrackId(), track.getName(), track.getAlbumId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the entry with the albums and tracks indexed below it. Returns
+     * false if it wasn't indexed.
+     */
+    public boolean remove(EntityType type, long id) {
+        lock.writeLock().lock();
+        try {
+            return removeTree(type, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (Map<Long, SearchEntry> ofType : entries.values()) size += ofType.size();
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The entries having the most of the query's tokens, rare tokens counting
+     * more than common ones and short names more than long ones. Tokens must
+     * match whole, see {@link #complete(String, int)} for prefixes.
+     */
+    public List<SearchHit> search(String query, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1");
+        lock.readLock().lock();
+        try {
+            int indexed = 0;
+            for (Map<Long, SearchEntry> ofType : entries.values()) indexed += ofType.size();
+            Map<SearchEntry, Double> scores = new HashMap<>();
+            for (String token : tokenize(query)) {
+                Set<SearchEntry> having = postings.get(token);
+                if (having == null) continue;
+                double idf = Math.log(1 + (double) indexed / having.size());
+                for (SearchEntry entry : having) scores.merge(entry, idf, Double::sum);
+            }
+            PriorityQueue<Map.Entry<SearchEntry, Double>> worstFirst = new PriorityQueue<>(limit + 1, BY_SCORE.reversed());
+            for (Map.Entry<SearchEntry, Double> score : scores.entrySet()) {
+                score.setValue(score.getValue() / Math.sqrt(score.getKey().tokens.length));
+                worstFirst.offer(score);
+                if (worstFirst.size() > limit) worstFirst.poll();
+            }
+            List<Map.Entry<SearchEntry, Double>> best = new ArrayList<>(worstFirst);
+            best.sort(BY_SCORE);
+            List<SearchHit> hits = new ArrayList<>(best.size());
+            for (Map.Entry<SearchEntry, Double> score : best) hits.add(hit(score.getKey(), score.getValue()));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Completions for what a user has typed so far: entries having every
+     * token of the input, the last one as a prefix, shortest name first.
+     * Completing a single word is answered from the trie and costs about
+     * the same however many entries share the prefix.
+     */
+    public List<SearchHit> complete(String input, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1");
+        List<String> tokens = new ArrayList<>(tokenize(input));
+        if (tokens.isEmpty()) return Collections.emptyList();
+        String prefix = tokens.remove(tokens.size() - 1);
+        if (!tokens.isEmpty()) return completeAll(tokens, prefix, limit);
+
+        lock.readLock().lock();
+        try {
+            List<SearchEntry> cached = trie.cachedTop(prefix, limit);
+            if (cached != null) return hits(cached);
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Building the prefix's list of best entries changes the trie
+        lock.writeLock().lock();
+        try {
+            return hits(trie.top(prefix, limit));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<SearchHit> completeAll(List<String> tokens, String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<SearchEntry> smallest = null;
+            for (String token : tokens) {
+                NavigableSet<SearchEntry> having = postings.get(token);
+                if (having == null) return Collections.emptyList();
+                if (smallest == null || having.size() < smallest.size()) smallest = having;
+            }
+            List<SearchEntry> best = new ArrayList<>(limit);
+            for (SearchEntry entry : smallest) {
+                if (!hasAll(entry, tokens, prefix)) continue;
+                best.add(entry);
+                if (best.size() == limit) break;
+            }
+            return hits(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean hasAll(SearchEntry entry, List<String> tokens, String prefix) {
+        for (String token : tokens) {
+            if (!hasToken(entry, token)) return false;
+        }
+        for (String token : entry.tokens) {
+            if (token.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasToken(SearchEntry entry, String token) {
+        for (String own : entry.tokens) {
+            if (own.equals(token)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lower case words of the text, accents removed, each once.
+     */
+    static Collection<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) return tokens;
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) tokens.add(token.toString());
+        return tokens;
+    }
+
+    private void put(EntityType type, long id, String name, long parentId) {
+        lock.writeLock().lock();
+        try {
+            replace(type, id, name, parentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Entries below keep their place, they refer to this one by id
+    private void replace(EntityType type, long id, String name, long parentId) {
+        removeEntry(type, id);
+        SearchEntry entry = new SearchEntry(type, id, name, parentId, tokenize(name).toArray(new String[0]));
+        for (String token : entry.tokens) postings.computeIfAbsent(token, key -> new TreeSet<>(SearchEntry.BY_RANK)).add(entry);
+        trie.add(entry);
+        entries.get(type).put(id, entry);
+        EntityType parentType = parentType(type);
+        if (parentType != null) children.get(parentType).computeIfAbsent(parentId, key -> new HashSet<>()).add(id);
+    }
+
+    private boolean removeTree(EntityType type, long id) {
+        Set<Long> below = children.get(type).remove(id);
+        if (below != null) {
+            EntityType childType = EntityType.values()[type.ordinal() + 1];
+            for (long childId : below) removeTree(childType, childId);
+        }
+        return removeEntry(type, id);
+    }
+
+    private boolean removeEntry(EntityType type, long id) {
+        SearchEntry entry = entries.get(type).remove(id);
+        if (entry == null) return false;
+        for (String token : entry.tokens) {
+            Set<SearchEntry> having = postings.get(token);
+            having.remove(entry);
+            if (having.isEmpty()) postings.remove(token);
+        }
+        trie.remove(entry);
+        EntityType parentType = parentType(type);
+        if (parentType != null) {
+            Set<Long> siblings = children.get(parentType).get(entry.getParentId());
+            if (siblings != null) {
+                siblings.remove(id);
+                if (siblings.isEmpty()) children.get(parentType).remove(entry.getParentId());
+            }
+        }
+        return true;
+    }
+
+    private static EntityType parentType(EntityType type) {
+        return type == EntityType.ARTIST ? null : EntityType.values()[type.ordinal() - 1];
+    }
+
+    private List<SearchHit> hits(List<SearchEntry> found) {
+        List<SearchHit> hits = new ArrayList<>(found.size());
+        for (SearchEntry entry : found) hits.add(hit(entry, 0));
+        return hits;
+    }
+
+    private SearchHit hit(SearchEntry entry, double score) {
+        List<SearchEntry> parents = new ArrayList<>(2);
+        SearchEntry child = entry;
+        for (EntityType type = parentType(entry.getType()); type != null; type = parentType(type)) {
+            SearchEntry parent = entries.get(type).get(child.getParentId());
+            if (parent == null) break;
+            parents.add(parent);
+            child = parent;
+        }
+        return new SearchHit(entry, score, parents);
+    }
+}
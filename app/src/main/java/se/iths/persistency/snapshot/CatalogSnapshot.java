@@ -0,0 +1,299 @@
+package se.iths.persistency.snapshot;
+
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable, column oriented copy of the whole catalog for read heavy nodes.
+ * Every table is a set of parallel arrays sorted by id: the ids, the index
+ * of the parent row and the index of the name in a shared {@link StringPool}.
+ * The children of a row are found CSR style, children[offsets[i]] up to
+ * children[offsets[i + 1]], so a lookup is a binary search and a few array
+ * reads. Model objects are only created for the rows a query returns.
+ * <p>
+ * The columns are buffers, either wrapping heap arrays or viewing a mapped
+ * {@link SnapshotFile}, so the same lookups decode straight from the file.
+ * <p>
+ * Like {@link se.iths.persistency.dao.CatalogDAO} the snapshot only holds
+ * albums and tracks that hang off an artist. It never changes, a newer
+ * catalog is a new snapshot.
+ */
+public final class CatalogSnapshot {
+    final LongBuffer artistIds;
+    final IntBuffer artistNames;
+    final IntBuffer artistAlbumOffsets;
+    final IntBuffer artistAlbums;
+    final LongBuffer albumIds;
+    final IntBuffer albumArtists;
+    final IntBuffer albumTitles;
+    final IntBuffer albumTrackOffsets;
+    final IntBuffer albumTracks;
+    final LongBuffer trackIds;
+    final IntBuffer trackAlbums;
+    final IntBuffer trackNames;
+    final StringPool strings;
+
+    CatalogSnapshot(LongBuffer artistIds, IntBuffer artistNames, IntBuffer artistAlbumOffsets, IntBuffer artistAlbums,
+                    LongBuffer albumIds, IntBuffer albumArtists, IntBuffer albumTitles, IntBuffer albumTrackOffsets, IntBuffer albumTracks,
+                    LongBuffer trackIds, IntBuffer trackAlbums, IntBuffer trackNames,
+                    StringPool strings) {
+        this.artistIds = artistIds;
+        this.artistNames = artistNames;
+        this.artistAlbumOffsets = artistAlbumOffsets;
+        this.artistAlbums = artistAlbums;
+        this.albumIds = albumIds;
+        this.albumArtists = albumArtists;
+        this.albumTitles = albumTitles;
+        this.albumTrackOffsets = albumTrackOffsets;
+        this.albumTracks = albumTracks;
+        this.trackIds = trackIds;
+        this.trackAlbums = trackAlbums;
+        this.trackNames = trackNames;
+        this.strings = strings;
+    }
+
+    public static CatalogSnapshot load() throws SQLException {
+        return load(new ArtistDAO(), new AlbumDAO(), new TrackDAO());
+    }
+
+    /**
+     * Streams the three tables once each, so the catalog is never held as
+     * objects while the snapshot is built.
+     */
+    public static CatalogSnapshot load(ArtistDAO artistDAO, AlbumDAO albumDAO, TrackDAO trackDAO) throws SQLException {
+        StringPool.Builder strings = new StringPool.Builder();
+        Rows artists = new Rows();
+        try (Stream<Artist> stream = artistDAO.streamAll()) {
+            stream.forEach(artist -> artists.add(artist.getArtistId(), 0L, strings.add(artist.getName())));
+        }
+        Rows albums = new Rows();
+        try (Stream<Album> stream = albumDAO.streamAll()) {
+            stream.forEach(album -> albums.add(album.getAlbumId(), album.getArtistId(), strings.add(album.getTitle())));
+        }
+        Rows tracks = new Rows();
+        try (Stream<Track> stream = trackDAO.streamAll()) {
+            stream.forEach(track -> tracks.add(track.getTrackId(), track.getAlbumId(), strings.add(track.getName())));
+        }
+        return build(artists, albums, tracks, strings);
+    }
+
+    /**
+     * Snapshot of an artist tree that is already loaded.
+     */
+    public static CatalogSnapshot of(Collection<Artist> catalog) {
+        StringPool.Builder strings = new StringPool.Builder();
+        Rows artists = new Rows();
+        Rows albums = new Rows();
+        Rows tracks = new Rows();
+        for (Artist artist : catalog) {
+            artists.add(artist.getArtistId(), 0L, strings.add(artist.getName()));
+            for (Album album : artist.getAlbums()) {
+                albums.add(album.getAlbumId(), artist.getArtistId(), strings.add(album.getTitle()));
+                for (Track track : album.getTracks()) {
+                    tracks.add(track.getTrackId(), album.getAlbumId(), strings.add(track.getName()));
+                }
+            }
+        }
+        return build(artists, albums, tracks, strings);
+    }
+
+    private static CatalogSnapshot build(Rows artists, Rows albums, Rows tracks, StringPool.Builder strings) {
+        artists.sortById();
+        albums.sortById();
+        albums.keepChildrenOf(artists.ids, artists.size);
+        tracks.sortById();
+        tracks.keepChildrenOf(albums.ids, albums.size);
+        int[] albumArtists = Arrays.copyOf(albums.parents, albums.size);
+        int[] artistAlbumOffsets = offsets(albumArtists, artists.size);
+        int[] trackAlbums = Arrays.copyOf(tracks.parents, tracks.size);
+        int[] albumTrackOffsets = offsets(trackAlbums, albums.size);
+        return new CatalogSnapshot(
+                LongBuffer.wrap(Arrays.copyOf(artists.ids, artists.size)), IntBuffer.wrap(Arrays.copyOf(artists.names, artists.size)),
+                IntBuffer.wrap(artistAlbumOffsets), IntBuffer.wrap(children(albumArtists, artistAlbumOffsets)),
+                LongBuffer.wrap(Arrays.copyOf(albums.ids, albums.size)), IntBuffer.wrap(albumArtists),
+                IntBuffer.wrap(Arrays.copyOf(albums.names, albums.size)),
+                IntBuffer.wrap(albumTrackOffsets), IntBuffer.wrap(children(trackAlbums, albumTrackOffsets)),
+                LongBuffer.wrap(Arrays.copyOf(tracks.ids, tracks.size)), IntBuffer.wrap(trackAlbums),
+                IntBuffer.wrap(Arrays.copyOf(tracks.names, tracks.size)),
+                strings.build());
+    }
+
+    /**
+     * The artist with all its albums and tracks.
+     */
+    public Optional<Artist> findArtistById(long artistId) {
+        int artist = search(artistIds, artistId);
+        return artist < 0 ? Optional.empty() : Optional.of(artist(artist));
+    }
+
+    /**
+     * The album with all its tracks.
+     */
+    public Optional<Album> findAlbumById(long albumId) {
+        int album = search(albumIds, albumId);
+        return album < 0 ? Optional.empty() : Optional.of(album(album));
+    }
+
+    public Optional<Track> findTrackById(long trackId) {
+        int track = search(trackIds, trackId);
+        return track < 0 ? Optional.empty() : Optional.of(track(track));
+    }
+
+    /**
+     * All artist trees in id order, each decoded when the stream reaches it.
+     */
+    public Stream<Artist> streamArtists() {
+        return IntStream.range(0, getArtistCount()).mapToObj(this::artist);
+    }
+
+    public int getArtistCount() {
+        return artistIds.capacity();
+    }
+
+    public int getAlbumCount() {
+        return albumIds.capacity();
+    }
+
+    public int getTrackCount() {
+        return trackIds.capacity();
+    }
+
+    private Artist artist(int artist) {
+        Artist found = new Artist(strings.get(artistNames.get(artist)));
+        found.setArtistId(artistIds.get(artist));
+        int from = artistAlbumOffsets.get(artist);
+        int to = artistAlbumOffsets.get(artist + 1);
+        List<Album> albums = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            albums.add(album(artistAlbums.get(i)));
+        }
+        found.addAll(albums);
+        return found;
+    }
+
+    private Album album(int album) {
+        Album found = new Album(strings.get(albumTitles.get(album)), artistIds.get(albumArtists.get(album)));
+        found.setAlbumId(albumIds.get(album));
+        int from = albumTrackOffsets.get(album);
+        int to = albumTrackOffsets.get(album + 1);
+        Collection<Track> tracks = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            tracks.add(track(albumTracks.get(i)));
+        }
+        found.addAll(tracks);
+        return found;
+    }
+
+    private Track track(int track) {
+        Track found = new Track(strings.get(trackNames.get(track)), albumIds.get(trackAlbums.get(track)));
+        found.setTrackId(trackIds.get(track));
+        return found;
+    }
+
+    private static int search(LongBuffer ids, long id) {
+        int low = 0;
+        int high = ids.capacity() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = ids.get(mid);
+            if (midId < id) low = mid + 1;
+            else if (midId > id) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * offsets[p] is where the children of parent p start, offsets[p + 1] where they end.
+     */
+    private static int[] offsets(int[] parents, int parentCount) {
+        int[] offsets = new int[parentCount + 1];
+        for (int parent : parents) offsets[parent + 1]++;
+        for (int p = 0; p < parentCount; p++) offsets[p + 1] += offsets[p];
+        return offsets;
+    }
+
+    /**
+     * Child row indexes grouped by parent. Children keep their id order since
+     * the rows are already sorted by id.
+     */
+    private static int[] children(int[] parents, int[] offsets) {
+        int[] children = new int[parents.length];
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int child = 0; child < parents.length; child++) {
+            children[next[parents[child]]++] = child;
+        }
+        return children;
+    }
+
+    /**
+     * Growable columns of one table while the snapshot is built. The parent
+     * ids are turned into parent row indexes by {@link #keepChildrenOf}.
+     */
+    private static class Rows {
+        long[] ids = new long[256];
+        long[] parentIds = new long[256];
+        int[] parents;
+        int[] names = new int[256];
+        int size;
+
+        void add(long id, long parentId, int name) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                parentIds = Arrays.copyOf(parentIds, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            ids[size] = id;
+            parentIds[size] = parentId;
+            names[size++] = name;
+        }
+
+        void sortById() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(ids[a], ids[b]));
+            long[] sortedIds = new long[size];
+            long[] sortedParentIds = new long[size];
+            int[] sortedNames = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedIds[i] = ids[order[i]];
+                sortedParentIds[i] = parentIds[order[i]];
+                sortedNames[i] = names[order[i]];
+            }
+            ids = sortedIds;
+            parentIds = sortedParentIds;
+            names = sortedNames;
+        }
+
+        /**
+         * Drops the rows whose parent isn't among the sorted parent ids.
+         */
+        void keepChildrenOf(long[] parentIdColumn, int parentCount) {
+            parents = new int[size];
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int parent = Arrays.binarySearch(parentIdColumn, 0, parentCount, parentIds[i]);
+                if (parent < 0) continue;
+                ids[kept] = ids[i];
+                parents[kept] = parent;
+                names[kept++] = names[i];
+            }
+            size = kept;
+        }
+    }
+}
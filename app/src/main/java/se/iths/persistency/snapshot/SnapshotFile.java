@@ -0,0 +1,168 @@
+package se.iths.persistency.snapshot;
+
+import se.iths.persistency.HighWaterMark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file holding the columns of a {@link CatalogSnapshot}. Opening one
+ * maps it read only and hands out buffer views of the columns, so nothing
+ * is parsed up front and the pages are read by the OS as lookups touch them.
+ * <p>
+ * The header has a magic number, the format version, the {@link HighWaterMark}
+ * of the database the catalog was read from, the table and string pool
+ * sizes, and a CRC32 of the rest of the file. The long columns come first
+ * so every column starts aligned, followed by the int columns and the string
+ * bytes.
+ */
+public class SnapshotFile {
+    static final int MAGIC = 0x43415453; // "CATS"
+    static final int VERSION = 3;
+    private static final int HEADER_SIZE = 72;
+    private static final int CHECKSUM_OFFSET = 64;
+
+    private SnapshotFile() {}
+
+    /**
+     * Writes the snapshot to a temporary file next to the target and moves it
+     * in place, so a reader never maps a half written file.
+     */
+    public static void write(Path file, CatalogSnapshot snapshot, HighWaterMark mark) throws IOException {
+        int artists = snapshot.getArtistCount();
+        int albums = snapshot.getAlbumCount();
+        int tracks = snapshot.getTrackCount();
+        int strings = snapshot.strings.size();
+        int stringBytes = snapshot.strings.data.capacity();
+        long size = size(artists, albums, tracks, strings, stringBytes);
+        if (size > Integer.MAX_VALUE) throw new IOException("Catalog too large for a snapshot file: " + size + " bytes");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putLong(mark.getMaxArtistId()).putLong(mark.getMaxAlbumId()).putLong(mark.getMaxTrackId())
+                .putLong(mark.getLastChangeId())
+                .putInt(artists).putInt(albums).putInt(tracks).putInt(strings).putInt(stringBytes);
+        buffer.position(HEADER_SIZE);
+        putLongs(buffer, snapshot.artistIds);
+        putLongs(buffer, snapshot.albumIds);
+        putLongs(buffer, snapshot.trackIds);
+        putInts(buffer, snapshot.artistNames);
+        putInts(buffer, snapshot.artistAlbumOffsets);
+        putInts(buffer, snapshot.artistAlbums);
+        putInts(buffer, snapshot.albumArtists);
+        putInts(buffer, snapshot.albumTitles);
+        putInts(buffer, snapshot.albumTrackOffsets);
+        putInts(buffer, snapshot.albumTracks);
+        putInts(buffer, snapshot.trackAlbums);
+        putInts(buffer, snapshot.trackNames);
+        putInts(buffer, snapshot.strings.offsets);
+        buffer.put(snapshot.strings.data.duplicate().clear());
+        buffer.putLong(CHECKSUM_OFFSET, checksum(buffer));
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                buffer.clear();
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Maps the snapshot file if it holds the catalog at the given mark.
+     * Returns empty when the file is missing, from another format version,
+     * corrupt or stale.
+     */
+    public static Optional<CatalogSnapshot> open(Path file, HighWaterMark expected) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return Optional.empty();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) return Optional.empty();
+        if (!readMark(buffer).equals(expected)) return Optional.empty();
+        int artists = buffer.getInt(40);
+        int albums = buffer.getInt(44);
+        int tracks = buffer.getInt(48);
+        int strings = buffer.getInt(52);
+        int stringBytes = buffer.getInt(56);
+        if (size(artists, albums, tracks, strings, stringBytes) != buffer.capacity()) return Optional.empty();
+        if (buffer.getLong(CHECKSUM_OFFSET) != checksum(buffer)) return Optional.empty();
+
+        buffer.position(HEADER_SIZE);
+        LongBuffer artistIds = longs(buffer, artists);
+        LongBuffer albumIds = longs(buffer, albums);
+        LongBuffer trackIds = longs(buffer, tracks);
+        IntBuffer artistNames = ints(buffer, artists);
+        IntBuffer artistAlbumOffsets = ints(buffer, artists + 1);
+        IntBuffer artistAlbums = ints(buffer, albums);
+        IntBuffer albumArtists = ints(buffer, albums);
+        IntBuffer albumTitles = ints(buffer, albums);
+        IntBuffer albumTrackOffsets = ints(buffer, albums + 1);
+        IntBuffer albumTracks = ints(buffer, tracks);
+        IntBuffer trackAlbums = ints(buffer, tracks);
+        IntBuffer trackNames = ints(buffer, tracks);
+        IntBuffer stringOffsets = ints(buffer, strings + 1);
+        ByteBuffer stringData = buffer.slice(buffer.position(), stringBytes);
+        return Optional.of(new CatalogSnapshot(artistIds, artistNames, artistAlbumOffsets, artistAlbums,
+                albumIds, albumArtists, albumTitles, albumTrackOffsets, albumTracks,
+                trackIds, trackAlbums, trackNames, new StringPool(stringData, stringOffsets)));
+    }
+
+    private static long size(int artists, int albums, int tracks, int strings, int stringBytes) {
+        long longs = (long) artists + albums + tracks;
+        long ints = 2L * artists + 4L * albums + 3L * tracks + strings + 3;
+        return HEADER_SIZE + longs * Long.BYTES + ints * Integer.BYTES + stringBytes;
+    }
+
+    private static HighWaterMark readMark(ByteBuffer buffer) {
+        return new HighWaterMark(buffer.getLong(8), buffer.getLong(16), buffer.getLong(24), buffer.getLong(32));
+    }
+
+    // Everything but the checksum itself
+    private static long checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, CHECKSUM_OFFSET));
+        crc.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+        return crc.getValue();
+    }
+
+    private static void putLongs(ByteBuffer buffer, LongBuffer column) {
+        buffer.asLongBuffer().put(column.duplicate().clear());
+        buffer.position(buffer.position() + column.capacity() * Long.BYTES);
+    }
+
+    private static void putInts(ByteBuffer buffer, IntBuffer column) {
+        buffer.asIntBuffer().put(column.duplicate().clear());
+        buffer.position(buffer.position() + column.capacity() * Integer.BYTES);
+    }
+
+    private static LongBuffer longs(ByteBuffer buffer, int count) {
+        LongBuffer column = buffer.slice(buffer.position(), count * Long.BYTES).asLongBuffer();
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return column;
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, int count) {
+        IntBuffer column = buffer.slice(buffer.position(), count * Integer.BYTES).asIntBuffer();
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return column;
+    }
+}
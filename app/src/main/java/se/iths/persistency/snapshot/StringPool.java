@@ -0,0 +1,65 @@
+package se.iths.persistency.snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicated strings stored back to back as UTF-8, with an offset per
+ * string. A string is referenced by its int index, and decoded into a String
+ * only when it is asked for. Index -1 stands for null. The buffers are either
+ * heap arrays or views of a mapped {@link SnapshotFile}.
+ */
+class StringPool {
+    static final int NULL = -1;
+    final ByteBuffer data;
+    final IntBuffer offsets;
+
+    StringPool(ByteBuffer data, IntBuffer offsets) {
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    String get(int index) {
+        if (index == NULL) return null;
+        int offset = offsets.get(index);
+        byte[] bytes = new byte[offsets.get(index + 1) - offset];
+        data.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    int size() {
+        return offsets.capacity() - 1;
+    }
+
+    static class Builder {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private byte[] data = new byte[1024];
+        private int[] offsets = new int[64];
+        private int size;
+
+        int add(String value) {
+            if (value == null) return NULL;
+            Integer index = indexes.get(value);
+            if (index != null) return index;
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int end = offsets[size];
+            if (end + bytes.length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, end + bytes.length));
+            }
+            System.arraycopy(bytes, 0, data, end, bytes.length);
+            if (size + 2 > offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            offsets[size + 1] = end + bytes.length;
+            indexes.put(value, size);
+            return size++;
+        }
+
+        StringPool build() {
+            return new StringPool(ByteBuffer.wrap(Arrays.copyOf(data, offsets[size])),
+                    IntBuffer.wrap(Arrays.copyOf(offsets, size + 1)));
+        }
+    }
+}
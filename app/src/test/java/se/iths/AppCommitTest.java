@@ -0,0 +1,70 @@
+package se.iths;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.dao.UnitOfWork;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppCommitTest {
+    static Artist artist;
+    static Album album;
+    static Track track;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("appcommit");
+        artist = new ArtistDAO().create(new Artist("Artist")).get();
+        album = new AlbumDAO().create(new Album("Album", artist.getArtistId())).get();
+        for (int i = 0; i < 10; i++) {
+            track = new TrackDAO().create(new Track("Track " + i, album.getAlbumId())).get();
+        }
+        new App().load();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldRenameHeldTracksWithOneQuery() throws SQLException {
+        Track held = App.findTrackById(track.getTrackId()).get();
+        UnitOfWork work = new UnitOfWork();
+        work.register(held).setName("Renamed");
+        long before = queries();
+        assertEquals(1, App.commit(work));
+        assertEquals(1, queries() - before);
+        assertEquals("Renamed", App.findArtistById(artist.getArtistId()).get()
+                .getAlbum(album.getAlbumId()).getTrack(track.getTrackId()).getName());
+
+        before = queries();
+        App.updateTrack(track.getTrackId(), "Renamed again");
+        assertTrue(queries() - before <= 2, "Renaming a track must not reload its tree!");
+        assertEquals("Renamed again", new TrackDAO().findById(track.getTrackId()).get().getName());
+    }
+
+    @Test
+    public void shouldCopyChangesOfDetachedCopiesIntoTheTree() throws SQLException {
+        Album copy = new AlbumDAO().findById(album.getAlbumId()).get();
+        UnitOfWork work = new UnitOfWork();
+        work.register(copy).setTitle("Retitled");
+        App.commit(work);
+        assertEquals("Retitled", App.findAlbumById(album.getAlbumId()).get().getTitle());
+    }
+
+    private static long queries() {
+        return ConnectionHandler.metrics().getAcquireCount();
+    }
+}
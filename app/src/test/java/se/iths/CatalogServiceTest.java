@@ -0,0 +1,83 @@
+package se.iths;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogServiceTest {
+    static final int REQUESTS = 2_000;
+    static CatalogService service = new CatalogService();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("catalogservice");
+        new App().load();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        service.close();
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldKeepArtistConsistentUnderConcurrentAdds() throws Exception {
+        Artist artist = service.addArtist("Concurrent artist").get().get();
+
+        List<CompletableFuture<Optional<Album>>> albums = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            albums.add(service.addAlbum(artist.getArtistId(), "Album " + i));
+        }
+        CompletableFuture.allOf(albums.toArray(new CompletableFuture[0])).join();
+
+        assertEquals(REQUESTS, App.findArtistById(artist.getArtistId()).get().getAlbums().size());
+        assertEquals(REQUESTS, new AlbumDAO().findByArtistId(artist.getArtistId()).size());
+    }
+
+    @Test
+    public void shouldServeConcurrentReadsAndDeletes() throws Exception {
+        Artist artist = service.addArtist("Artist to delete").get().get();
+        Album album = service.addAlbum(artist.getArtistId(), "Album to delete").get().get();
+        for (int i = 0; i < 10; i++) {
+            service.addTrack(album.getAlbumId(), "Track " + i).get();
+        }
+
+        List<CompletableFuture<Optional<Artist>>> reads = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            reads.add(service.findArtistById(artist.getArtistId()));
+        }
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).join();
+        assertTrue(service.deleteArtist(artist.getArtistId()).get());
+
+        assertTrue(App.findArtistById(artist.getArtistId()).isEmpty());
+        assertTrue(new AlbumDAO().findById(album.getAlbumId()).isEmpty());
+    }
+
+    @Test
+    public void shouldFindArtistsInParallel() throws Exception {
+        List<Long> artistIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            artistIds.add(new ArtistDAO().create(new Artist("Parallel artist " + i)).get().getArtistId());
+        }
+        artistIds.add(-1L);
+
+        Map<Long, Artist> found = App.findArtistsById(artistIds);
+
+        assertEquals(20, found.size());
+        assertEquals("Parallel artist 0", found.get(artistIds.get(0)).getName());
+    }
+}
@@ -0,0 +1,101 @@
+package se.iths;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeleteArtistTest {
+    static final TrackDAO trackDAO = new TrackDAO();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("deleteartist");
+        new App().load();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldDeleteArtistInOneTransaction() throws SQLException {
+        Artist artist = createArtist("Deleted");
+        Album album = App.findArtistById(artist.getArtistId()).get().getAlbums().iterator().next();
+        // Added behind the app's back, the cascade deletes it all the same
+        EmbeddedDatabase.execute("INSERT INTO Track (Name, AlbumId, MediaTypeId, Milliseconds, UnitPrice) VALUES ('Unknown', "
+                + album.getAlbumId() + ", 1, 1, 0.99)");
+
+        long before = ConnectionHandler.metrics().getAcquireCount();
+        assertTrue(App.deleteArtist(artist.getArtistId()));
+        assertEquals(1, ConnectionHandler.metrics().getAcquireCount() - before);
+        assertTrue(new ArtistDAO().findById(artist.getArtistId()).isEmpty());
+        assertTrue(new AlbumDAO().findByArtistId(artist.getArtistId()).isEmpty());
+        assertTrue(trackDAO.findByAlbumId(album.getAlbumId()).isEmpty());
+        assertFalse(App.artists.containsKey(artist.getArtistId()));
+        assertTrue(App.findArtistById(artist.getArtistId()).isEmpty());
+    }
+
+    @Test
+    public void shouldInvalidateCachedRowsOfAnArtistNotInTheCache() throws SQLException {
+        Artist artist = createArtist("Not cached");
+        Album album = new AlbumDAO().findByArtistId(artist.getArtistId()).iterator().next();
+        Track track = trackDAO.findByAlbumId(album.getAlbumId()).iterator().next();
+        App.albumCache.findById(album.getAlbumId());
+        App.trackCache.findById(track.getTrackId());
+        assertNull(App.artistCache.get(artist.getArtistId()));
+
+        assertTrue(App.deleteArtist(artist.getArtistId()));
+        assertNull(App.artistCache.get(artist.getArtistId()), "Deleting must not load the tree!");
+        assertTrue(App.albumCache.findById(album.getAlbumId()).isEmpty());
+        assertTrue(App.trackCache.findById(track.getTrackId()).isEmpty());
+    }
+
+    @Test
+    public void shouldLeaveArtistWholeWhenDeleteFails() throws SQLException {
+        Artist artist = createArtist("Kept");
+        Album album = App.findArtistById(artist.getArtistId()).get().getAlbums().iterator().next();
+        // A table the cascade doesn't know about, like InvoiceLine in Chinook
+        EmbeddedDatabase.execute("CREATE TABLE AlbumNote (AlbumId INT NOT NULL, FOREIGN KEY (AlbumId) REFERENCES Album (AlbumId))",
+                "INSERT INTO AlbumNote (AlbumId) VALUES (" + album.getAlbumId() + ")");
+
+        assertThrows(SQLException.class, () -> App.deleteArtist(artist.getArtistId()));
+        assertEquals(5, trackDAO.findByAlbumId(album.getAlbumId()).size());
+        assertTrue(new ArtistDAO().findById(artist.getArtistId()).isPresent());
+        assertEquals(5, App.findArtistById(artist.getArtistId()).get().getAlbum(album.getAlbumId()).getTracks().size());
+    }
+
+    @Test
+    public void shouldDeleteAlbumWithItsTracks() throws SQLException {
+        Artist artist = createArtist("Album owner");
+        Album album = App.findArtistById(artist.getArtistId()).get().getAlbums().iterator().next();
+
+        assertTrue(App.deleteAlbum(album.getAlbumId()));
+        assertTrue(trackDAO.findByAlbumId(album.getAlbumId()).isEmpty());
+        assertNull(App.findArtistById(artist.getArtistId()).get().getAlbum(album.getAlbumId()));
+        assertTrue(App.findAlbumById(album.getAlbumId()).isEmpty());
+    }
+
+    private static Artist createArtist(String name) throws SQLException {
+        Artist artist = new ArtistDAO().create(new Artist(name)).get();
+        for (int a = 0; a < 3; a++) {
+            Album album = new AlbumDAO().create(new Album(name + " " + a, artist.getArtistId())).get();
+            for (int t = 0; t < 5; t++) {
+                trackDAO.create(new Track(name + " " + a + "-" + t, album.getAlbumId()));
+            }
+        }
+        return artist;
+    }
+}
@@ -0,0 +1,93 @@
+package se.iths;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefreshTest {
+    static final ArtistDAO artistDAO = new ArtistDAO();
+    static final AlbumDAO albumDAO = new AlbumDAO();
+    static final TrackDAO trackDAO = new TrackDAO();
+    static final List<Artist> created = new ArrayList<>();
+    static final List<Album> albums = new ArrayList<>();
+    static final List<Track> tracks = new ArrayList<>();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("refresh");
+        for (int a = 0; a < 20; a++) {
+            Artist artist = artistDAO.create(new Artist("Artist " + a)).get();
+            created.add(artist);
+            for (int b = 0; b < 3; b++) {
+                Album album = albumDAO.create(new Album("Album " + a + "-" + b, artist.getArtistId())).get();
+                albums.add(album);
+                for (int t = 0; t < 5; t++) {
+                    tracks.add(trackDAO.create(new Track("Track " + a + "-" + b + "-" + t, album.getAlbumId())).get());
+                }
+            }
+        }
+        new App().load();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldApplyChangesMadeBehindTheAppsBack() throws SQLException {
+        long before = queries();
+        App.refresh();
+        assertEquals(1, queries() - before, "An unchanged catalog must cost one query!");
+
+        Track renamed = tracks.get(0);
+        renamed.setName("Renamed");
+        trackDAO.update(renamed);
+        Track moved = tracks.get(1);
+        EmbeddedDatabase.execute("UPDATE Track SET AlbumId = " + albums.get(3).getAlbumId() + " WHERE TrackId = " + moved.getTrackId());
+        trackDAO.deleteById(tracks.get(2).getTrackId());
+        Album emptied = albums.get(6);
+        for (Track track : trackDAO.findByAlbumId(emptied.getAlbumId())) trackDAO.delete(track);
+        albumDAO.deleteById(emptied.getAlbumId());
+        Album added = albumDAO.create(new Album("Added", created.get(4).getArtistId())).get();
+        trackDAO.create(new Track("Added track", added.getAlbumId()));
+        Artist newcomer = artistDAO.create(new Artist("Newcomer")).get();
+        Artist renamedArtist = created.get(5);
+        renamedArtist.setName("Renamed artist");
+        artistDAO.update(renamedArtist);
+
+        before = queries();
+        App.refresh();
+        assertTrue(queries() - before <= 10, "Refresh cost must not depend on the catalog size!");
+
+        Artist first = App.artists.get(created.get(0).getArtistId());
+        Album firstAlbum = first.getAlbum(albums.get(0).getAlbumId());
+        assertEquals("Renamed", firstAlbum.getTrack(renamed.getTrackId()).getName());
+        assertNull(firstAlbum.getTrack(moved.getTrackId()));
+        assertNull(firstAlbum.getTrack(tracks.get(2).getTrackId()));
+        assertNotNull(App.artists.get(created.get(1).getArtistId()).getAlbum(albums.get(3).getAlbumId()).getTrack(moved.getTrackId()));
+        assertNull(App.artists.get(created.get(2).getArtistId()).getAlbum(emptied.getAlbumId()));
+        assertEquals(1, App.artists.get(created.get(4).getArtistId()).getAlbum(added.getAlbumId()).getTracks().size());
+        assertEquals("Newcomer", App.artists.get(newcomer.getArtistId()).getName());
+        assertEquals("Renamed artist", App.artists.get(renamedArtist.getArtistId()).getName());
+        assertEquals(300 - 1 - 5 + 1, App.findAllTracks().size());
+    }
+
+    private static long queries() {
+        return ConnectionHandler.metrics().getAcquireCount();
+    }
+}
@@ -0,0 +1,42 @@
+package se.iths;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.CatalogDAO;
+import se.iths.persistency.model.Artist;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefreshWithoutChangeLogTest {
+    static final ArtistDAO artistDAO = new ArtistDAO();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("nochangelog");
+        EmbeddedDatabase.execute("DROP TRIGGER TR_Artist", "DROP TRIGGER TR_Album", "DROP TRIGGER TR_Track",
+                "DROP TABLE CatalogChange");
+        artistDAO.create(new Artist("Before load"));
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldReloadWholeCatalogWithoutChangeLog() throws SQLException {
+        assertTrue(new CatalogDAO().findHighWaterMark().isEmpty());
+
+        new App().load();
+        assertEquals(1, App.artists.size());
+
+        Artist added = artistDAO.create(new Artist("After load")).get();
+        App.refresh();
+        assertEquals("After load", App.artists.get(added.getArtistId()).getName());
+    }
+}
@@ -0,0 +1,64 @@
+package se.iths;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+import se.iths.persistency.search.EntityType;
+import se.iths.persistency.search.SearchHit;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchTest {
+    static Artist artist;
+    static Album album;
+    static Track track;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("search");
+        artist = new ArtistDAO().create(new Artist("Miles Davis")).get();
+        album = new AlbumDAO().create(new Album("Kind of Blue", artist.getArtistId())).get();
+        track = new TrackDAO().create(new Track("So What", album.getAlbumId())).get();
+        new TrackDAO().create(new Track("Blue in Green", album.getAlbumId()));
+        new App().load();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldKeepTheIndexInStepWithTheApp() throws SQLException {
+        List<SearchHit> hits = App.search("blue", 10);
+        assertEquals(List.of("Kind of Blue", "Blue in Green"), hits.stream().map(SearchHit::getName).collect(Collectors.toList()));
+        assertEquals("Miles Davis", hits.get(1).getParents().get(1).getName());
+
+        App.updateTrack(track.getTrackId(), "Freddie Freeloader");
+        assertEquals(track.getTrackId(), App.complete("freel", 1).get(0).getId());
+        assertTrue(App.search("what", 1).isEmpty());
+
+        Track added = App.addTrack(album.getAlbumId(), "All Blues").get();
+        assertEquals(added.getTrackId(), App.complete("all b", 1).get(0).getId());
+
+        // Changed behind the app's back, picked up by the next refresh
+        EmbeddedDatabase.execute("UPDATE Album SET Title = 'Sketches of Spain' WHERE AlbumId = " + album.getAlbumId());
+        App.refresh();
+        assertEquals(EntityType.ALBUM, App.complete("sketch", 1).get(0).getType());
+
+        assertTrue(App.deleteArtist(artist.getArtistId()));
+        assertTrue(App.complete("fre", 10).isEmpty());
+        assertTrue(App.search("miles", 10).isEmpty());
+    }
+}
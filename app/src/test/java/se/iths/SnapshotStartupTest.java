@@ -0,0 +1,65 @@
+package se.iths;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotStartupTest {
+    static Artist artist;
+    static Track track;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("snapshotstartup");
+        artist = new ArtistDAO().create(new Artist("Snapshot artist")).get();
+        Album album = new AlbumDAO().create(new Album("Snapshot album", artist.getArtistId())).get();
+        for (int i = 0; i < 3; i++) {
+            track = new TrackDAO().create(new Track("Track " + i, album.getAlbumId())).get();
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        App.snapshot = null;
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldStartFromSnapshotUntilTheDatabaseMoves(@TempDir Path directory) throws SQLException, IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        new App().load(file);
+        assertTrue(Files.exists(file));
+        assertNull(App.snapshot, "First start loads from the database!");
+
+        new App().load(file);
+        assertNotNull(App.snapshot);
+        long before = ConnectionHandler.metrics().getAcquireCount();
+        assertEquals(3, App.findArtistById(artist.getArtistId()).get().getAlbums().iterator().next().getTracks().size());
+        assertEquals("Track 2", App.findTrackById(track.getTrackId()).get().getName());
+        assertEquals(0, ConnectionHandler.metrics().getAcquireCount() - before, "Reads must come from the snapshot!");
+
+        App.updateTrack(track.getTrackId(), "Renamed");
+        App.artistCache.invalidateAll();
+        assertEquals("Renamed", App.findTrackById(track.getTrackId()).get().getName());
+
+        new ArtistDAO().create(new Artist("New artist"));
+        new App().load(file);
+        assertNull(App.snapshot, "A snapshot behind the database must not be used!");
+    }
+}
@@ -0,0 +1,100 @@
+package se.iths.persistency;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.model.Artist;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncCRUDTest {
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("asynccrud");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldRunDaoCallsAsynchronously() {
+        AsyncCRUD<Artist> artists = new AsyncCRUD<>(new ArtistDAO());
+        List<CompletableFuture<Artist>> created = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            created.add(artists.create(new Artist("Async artist " + i)).thenApply(artist -> artist.get()));
+        }
+        for (CompletableFuture<Artist> artist : created) {
+            long artistId = artist.join().getArtistId();
+            assertEquals(artist.join().getName(), artists.findById(artistId).join().get().getName());
+        }
+        assertTrue(artists.deleteById(created.get(0).join().getArtistId()).join());
+        assertEquals(99, artists.findAll().join().size());
+    }
+
+    @Test
+    public void shouldLimitConcurrentCalls() {
+        AsyncCRUD<Artist> artists = new AsyncCRUD<>(new ArtistDAO(), AsyncCRUD.newPerTaskExecutor(), 3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            calls.add(artists.supply(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(10);
+                return running.decrementAndGet();
+            }));
+        }
+        calls.forEach(CompletableFuture::join);
+
+        assertEquals(3, maxRunning.get());
+    }
+
+    @Test
+    public void shouldNotHandWaitingCallsToTheExecutor() throws InterruptedException {
+        AtomicInteger handedOver = new AtomicInteger();
+        ExecutorService pool = AsyncCRUD.newPerTaskExecutor();
+        Executor counting = task -> {
+            handedOver.incrementAndGet();
+            pool.execute(task);
+        };
+        AsyncCRUD<Artist> artists = new AsyncCRUD<>(new ArtistDAO(), counting, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            calls.add(artists.supply(() -> release.await(5, TimeUnit.SECONDS)));
+        }
+        Thread.sleep(50);
+        assertEquals(3, handedOver.get(), "Calls waiting for a permit must not hold a thread!");
+
+        release.countDown();
+        calls.forEach(call -> assertTrue(call.join()));
+        assertEquals(30, handedOver.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldCompleteExceptionallyOnSqlError() {
+        AsyncCRUD<Artist> artists = new AsyncCRUD<>(new ArtistDAO());
+        CompletableFuture<Integer> failing = artists.supply(() -> {
+            throw new SQLException("Broken query");
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, failing::join);
+        assertInstanceOf(SQLException.class, e.getCause());
+    }
+}
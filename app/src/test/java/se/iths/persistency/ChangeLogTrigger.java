@@ -0,0 +1,31 @@
+package se.iths.persistency;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * H2 version of the triggers in db_changelog.sql. Logs the id and the old
+ * parent id of every updated or deleted Artist, Album or Track row.
+ */
+public class ChangeLogTrigger implements Trigger {
+    private String tableName;
+
+    @Override
+    public void init(Connection con, String schemaName, String triggerName, String tableName, boolean before, int type) {
+        this.tableName = tableName.charAt(0) + tableName.substring(1).toLowerCase();
+    }
+
+    @Override
+    public void fire(Connection con, Object[] oldRow, Object[] newRow) throws SQLException {
+        PreparedStatement stat = con.prepareStatement("INSERT INTO CatalogChange (TableName, RowId, ParentId) VALUES (?, ?, ?)");
+        stat.setString(1, tableName);
+        stat.setObject(2, oldRow[0]);
+        // Album and Track have their parent id in the third column
+        stat.setObject(3, oldRow.length > 2 ? oldRow[2] : null);
+        stat.executeUpdate();
+        stat.close();
+    }
+}
@@ -0,0 +1,118 @@
+package se.iths.persistency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+    ConnectionPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        PoolConfig config = new PoolConfig("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", "sa", "");
+        config.setMinSize(0);
+        config.setMaxSize(2);
+        config.setAcquireTimeoutMillis(100);
+        config.setStatementCacheSize(2);
+        pool = new ConnectionPool(config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void shouldReuseReturnedConnection() throws SQLException {
+        Connection con = pool.getConnection();
+        con.close();
+        Connection con2 = pool.getConnection();
+
+        assertEquals(1, pool.getMetrics().getTotal(), "Returned connection must be reused!");
+        assertEquals(1, pool.getMetrics().getActive());
+        con2.close();
+        assertEquals(1, pool.getMetrics().getIdle());
+    }
+
+    @Test
+    public void shouldNotUseConnectionAfterClose() throws SQLException {
+        Connection con = pool.getConnection();
+        con.close();
+
+        assertTrue(con.isClosed());
+        assertThrows(SQLException.class, con::createStatement);
+    }
+
+    @Test
+    public void shouldTimeOutWhenPoolIsExhausted() throws SQLException {
+        Connection con1 = pool.getConnection();
+        Connection con2 = pool.getConnection();
+
+        assertThrows(SQLTimeoutException.class, () -> pool.getConnection());
+        assertEquals(1, pool.getMetrics().getAcquireTimeouts());
+        con1.close();
+        con2.close();
+    }
+
+    @Test
+    public void shouldCloseLeakedStatementsOnReturn() throws SQLException {
+        Connection con = pool.getConnection();
+        Statement stmt = con.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT 1");
+        con.close();
+
+        assertTrue(stmt.isClosed(), "Leaked statement must be closed when connection is returned!");
+        assertTrue(rs.isClosed());
+        assertEquals(1, pool.getMetrics().getLeaksDetected());
+    }
+
+    @Test
+    public void shouldRecordAcquireTimes() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            pool.getConnection().close();
+        }
+
+        assertEquals(5, pool.getMetrics().getAcquireCount());
+    }
+
+    @Test
+    public void shouldReusePreparedStatementFromCache() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            Connection con = pool.getConnection();
+            PreparedStatement stat = con.prepareStatement("SELECT ? + 1");
+            stat.setLong(1, i);
+            ResultSet rs = stat.executeQuery();
+            rs.next();
+            assertEquals(i + 1, rs.getLong(1));
+            ConnectionHandler.close(rs);
+            ConnectionHandler.close(stat);
+            ConnectionHandler.close(con);
+        }
+
+        assertEquals(1, pool.getMetrics().getStatementCacheMisses());
+        assertEquals(2, pool.getMetrics().getStatementCacheHits());
+        assertEquals(0, pool.getMetrics().getLeaksDetected());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedStatement() throws SQLException {
+        Connection con = pool.getConnection();
+        for (String sql : new String[]{"SELECT 1", "SELECT 2", "SELECT 1", "SELECT 3", "SELECT 2"}) {
+            con.prepareStatement(sql).close();
+        }
+        con.close();
+
+        assertEquals(1, pool.getMetrics().getStatementCacheHits());
+        assertEquals(4, pool.getMetrics().getStatementCacheMisses());
+        assertEquals(2, pool.getMetrics().getStatementCacheEvictions());
+    }
+}
@@ -0,0 +1,63 @@
+package se.iths.persistency;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-memory H2 database with the Chinook tables the DAOs use and the change
+ * log of db_changelog.sql, for tests that should run without the docker
+ * MySQL container. H2's MySQL mode is left off since it can hand out
+ * duplicate AUTO_INCREMENT ids to concurrent inserts.
+ */
+public class EmbeddedDatabase {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE Artist (ArtistId INT GENERATED BY DEFAULT AS IDENTITY, Name NVARCHAR(120), PRIMARY KEY (ArtistId))",
+            "CREATE TABLE Album (AlbumId INT GENERATED BY DEFAULT AS IDENTITY, Title NVARCHAR(160) NOT NULL, ArtistId INT NOT NULL,"
+                    + " PRIMARY KEY (AlbumId), FOREIGN KEY (ArtistId) REFERENCES Artist (ArtistId))",
+            "CREATE TABLE Track (TrackId INT GENERATED BY DEFAULT AS IDENTITY, Name NVARCHAR(200) NOT NULL, AlbumId INT,"
+                    + " MediaTypeId INT NOT NULL, GenreId INT, Composer NVARCHAR(220), Milliseconds INT NOT NULL,"
+                    + " Bytes INT, UnitPrice NUMERIC(10,2) NOT NULL,"
+                    + " PRIMARY KEY (TrackId), FOREIGN KEY (AlbumId) REFERENCES Album (AlbumId))",
+            "CREATE TABLE PlaylistTrack (PlaylistId INT NOT NULL, TrackId INT NOT NULL,"
+                    + " PRIMARY KEY (PlaylistId, TrackId), FOREIGN KEY (TrackId) REFERENCES Track (TrackId))",
+            "CREATE INDEX IFK_AlbumArtistId ON Album (ArtistId)",
+            "CREATE INDEX IFK_TrackAlbumId ON Track (AlbumId)",
+            "CREATE TABLE CatalogChange (ChangeId BIGINT GENERATED BY DEFAULT AS IDENTITY, TableName VARCHAR(10) NOT NULL,"
+                    + " RowId INT NOT NULL, ParentId INT, PRIMARY KEY (ChangeId))",
+            "CREATE TRIGGER TR_Artist AFTER UPDATE, DELETE ON Artist FOR EACH ROW CALL '" + ChangeLogTrigger.class.getName() + "'",
+            "CREATE TRIGGER TR_Album AFTER UPDATE, DELETE ON Album FOR EACH ROW CALL '" + ChangeLogTrigger.class.getName() + "'",
+            "CREATE TRIGGER TR_Track AFTER UPDATE, DELETE ON Track FOR EACH ROW CALL '" + ChangeLogTrigger.class.getName() + "'"
+    };
+
+    /**
+     * Points {@link ConnectionHandler} at a fresh, empty database with the given name.
+     */
+    public static void start(String name) throws SQLException {
+        PoolConfig config = new PoolConfig("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        config.setMinSize(0);
+        ConnectionHandler.configure(config);
+        Connection con = ConnectionHandler.connect();
+        Statement stmt = con.createStatement();
+        stmt.execute("DROP ALL OBJECTS");
+        for (String sql : SCHEMA) {
+            stmt.execute(sql);
+        }
+        ConnectionHandler.close(stmt);
+        ConnectionHandler.close(con);
+    }
+
+    public static void execute(String... sql) throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        Statement stmt = con.createStatement();
+        for (String s : sql) {
+            stmt.execute(s);
+        }
+        ConnectionHandler.close(stmt);
+        ConnectionHandler.close(con);
+    }
+
+    public static void stop() {
+        ConnectionHandler.shutdown();
+    }
+}
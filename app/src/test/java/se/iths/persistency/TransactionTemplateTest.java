@@ -0,0 +1,135 @@
+package se.iths.persistency;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionTemplateTest {
+    static final ArtistDAO artistDAO = new ArtistDAO();
+    static final AlbumDAO albumDAO = new AlbumDAO();
+    static final TrackDAO trackDAO = new TrackDAO();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("transactiontemplate");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldShareOneConnectionAndCommitOnce() throws SQLException {
+        long before = acquired();
+        Album album = TransactionTemplate.inTransaction(ctx -> {
+            Artist artist = artistDAO.create(new Artist("Committed")).get();
+            Album created = albumDAO.create(new Album("Committed", artist.getArtistId())).get();
+            trackDAO.createAll(List.of(new Track("One", created.getAlbumId()), new Track("Two", created.getAlbumId())));
+            assertEquals(2, trackDAO.findByAlbumId(created.getAlbumId()).size(), "The transaction must see its own writes!");
+            return created;
+        });
+        assertEquals(1, acquired() - before);
+        assertFalse(ConnectionHandler.inTransaction());
+        assertEquals(2, trackDAO.findByAlbumId(album.getAlbumId()).size());
+    }
+
+    @Test
+    public void shouldRollBackWhenTheCallbackFails() throws SQLException {
+        long[] artistId = new long[1];
+        assertThrows(SQLException.class, () -> TransactionTemplate.inTransaction(ctx -> {
+            artistId[0] = artistDAO.create(new Artist("Rolled back")).get().getArtistId();
+            albumDAO.create(new Album("Rolled back", artistId[0]));
+            return albumDAO.create(new Album(null, artistId[0]));
+        }));
+        assertTrue(artistDAO.findById(artistId[0]).isEmpty());
+        assertTrue(albumDAO.findByArtistId(artistId[0]).isEmpty());
+    }
+
+    @Test
+    public void shouldRollBackWhenMarkedRollbackOnly() throws SQLException {
+        long artistId = TransactionTemplate.inTransaction(ctx -> {
+            ctx.setRollbackOnly();
+            return artistDAO.create(new Artist("Rollback only")).get().getArtistId();
+        });
+        assertTrue(artistDAO.findById(artistId).isEmpty());
+    }
+
+    @Test
+    public void shouldJoinTheEnclosingTransaction() throws SQLException {
+        long[] artistId = new long[1];
+        assertThrows(IllegalStateException.class, () -> TransactionTemplate.inTransaction(outer -> {
+            TransactionTemplate.inTransaction(inner -> {
+                assertSame(outer, inner);
+                artistId[0] = artistDAO.create(new Artist("Joined")).get().getArtistId();
+                return null;
+            });
+            throw new IllegalStateException("Outer fails after the inner one returned");
+        }));
+        assertTrue(artistDAO.findById(artistId[0]).isEmpty());
+    }
+
+    @Test
+    public void shouldRollBackWhenAJoinedCallbackFailsAndIsCaught() throws SQLException {
+        long artistId = TransactionTemplate.inTransaction(outer -> {
+            long created = artistDAO.create(new Artist("Inner fails")).get().getArtistId();
+            assertThrows(IllegalStateException.class, () -> TransactionTemplate.inTransaction(inner -> {
+                throw new IllegalStateException("Inner fails");
+            }));
+            return created;
+        });
+        assertTrue(artistDAO.findById(artistId).isEmpty(), "A failed inner callback must roll back the outer transaction!");
+    }
+
+    @Test
+    public void shouldThrowAndRollBackFailedBatchesInATransaction() throws SQLException {
+        TrackDAO oneByOne = new TrackDAO();
+        oneByOne.setBatchSize(1);
+        Artist artist = artistDAO.create(new Artist("Batches")).get();
+        Album album = albumDAO.create(new Album("Batches", artist.getArtistId())).get();
+        TransactionTemplate.inTransaction(ctx -> {
+            assertThrows(SQLException.class, () -> oneByOne.createAll(List.of(
+                    new Track("Written", album.getAlbumId()), new Track(null, album.getAlbumId()))));
+            return null;
+        });
+        assertTrue(trackDAO.findByAlbumId(album.getAlbumId()).isEmpty(), "The batch before the failed one must be rolled back!");
+    }
+
+    @Test
+    public void shouldReturnTheConnectionWhenSetupFails() {
+        TransactionTemplate template = new TransactionTemplate();
+        template.setIsolation(12345);
+        assertThrows(SQLException.class, () -> template.execute(ctx -> null));
+        assertFalse(ConnectionHandler.inTransaction());
+        assertEquals(0, ConnectionHandler.metrics().getActive());
+    }
+
+    @Test
+    public void shouldApplyIsolationAndReadOnlyHints() throws SQLException {
+        TransactionTemplate template = new TransactionTemplate();
+        template.setIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        template.setReadOnly(true);
+        Connection used = template.execute(ctx -> {
+            assertEquals(Connection.TRANSACTION_SERIALIZABLE, ctx.getConnection().getTransactionIsolation());
+            assertFalse(ctx.getConnection().getAutoCommit());
+            return ctx.getConnection();
+        });
+        assertTrue(used.isClosed(), "The connection must go back to the pool!");
+    }
+
+    private static long acquired() {
+        return ConnectionHandler.metrics().getAcquireCount();
+    }
+}
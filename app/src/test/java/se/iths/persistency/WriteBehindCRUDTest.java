@@ -0,0 +1,185 @@
+package se.iths.persistency;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindCRUDTest {
+    static final Duration NEVER = Duration.ofHours(1);
+    static final TrackDAO trackDAO = new TrackDAO();
+    static final List<Track> tracks = new ArrayList<>();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("writebehind");
+        Artist artist = new ArtistDAO().create(new Artist("Artist")).get();
+        Album album = new AlbumDAO().create(new Album("Album", artist.getArtistId())).get();
+        for (int i = 0; i < 10; i++) {
+            tracks.add(trackDAO.create(new Track("Track " + i, album.getAlbumId())).get());
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldCoalesceUpdatesOfTheSameId() throws SQLException {
+        CountingTrackDAO dao = new CountingTrackDAO();
+        try (WriteBehindCRUD<Track> writes = new WriteBehindCRUD<>(dao, Track::getTrackId, 100, 100, NEVER)) {
+            for (int i = 0; i < 100; i++) {
+                writes.update(copy(tracks.get(i % 2), "Burst " + i));
+            }
+            assertEquals(2, writes.getPendingCount());
+            assertEquals(0, dao.updateAllCalls.get(), "Updates must not be written before a flush!");
+            assertEquals("Burst 99", writes.findById(tracks.get(1).getTrackId()).get().getName());
+
+            assertEquals(2, writes.flush());
+            assertEquals(1, dao.updateAllCalls.get());
+            assertEquals(100, writes.getUpdateCount());
+            assertEquals(2, writes.getWrittenCount());
+            assertEquals("Burst 98", trackDAO.findById(tracks.get(0).getTrackId()).get().getName());
+            assertEquals("Burst 99", trackDAO.findById(tracks.get(1).getTrackId()).get().getName());
+        }
+    }
+
+    @Test
+    public void shouldFlushOnSizeAndTime() throws Exception {
+        try (WriteBehindCRUD<Track> writes = new WriteBehindCRUD<>(trackDAO, Track::getTrackId, 4, 2, NEVER)) {
+            writes.update(copy(tracks.get(2), "Size 2"));
+            writes.update(copy(tracks.get(3), "Size 3"));
+            awaitFlushed(writes);
+            assertEquals("Size 3", trackDAO.findById(tracks.get(3).getTrackId()).get().getName());
+        }
+        try (WriteBehindCRUD<Track> writes = new WriteBehindCRUD<>(trackDAO, Track::getTrackId, 100, 100, Duration.ofMillis(20))) {
+            writes.update(copy(tracks.get(4), "Timed"));
+            awaitFlushed(writes);
+            assertEquals("Timed", trackDAO.findById(tracks.get(4).getTrackId()).get().getName());
+        }
+    }
+
+    @Test
+    public void shouldMakeWritersWaitWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountingTrackDAO dao = new CountingTrackDAO() {
+            @Override
+            public BatchResult<Track> updateAll(Collection<Track> tracks) throws SQLException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return super.updateAll(tracks);
+            }
+        };
+        try (WriteBehindCRUD<Track> writes = new WriteBehindCRUD<>(dao, Track::getTrackId, 2, 2, NEVER)) {
+            writes.update(copy(tracks.get(5), "Full 5"));
+            writes.update(copy(tracks.get(6), "Full 6"));
+            writes.update(copy(tracks.get(6), "Full 6 again"));
+            CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+                try {
+                    writes.update(copy(tracks.get(7), "Full 7"));
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(blocked.isDone(), "A writer must wait while the buffer is full!");
+
+            release.countDown();
+            blocked.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals("Full 7", trackDAO.findById(tracks.get(7).getTrackId()).get().getName());
+    }
+
+    @Test
+    public void shouldFlushOnCloseAndDropDeletedIds() throws Exception {
+        Track deleted = trackDAO.create(new Track("Deleted", tracks.get(0).getAlbumId())).get();
+        WriteBehindCRUD<Track> writes = new WriteBehindCRUD<>(trackDAO, Track::getTrackId, 100, 100, NEVER);
+        writes.update(copy(tracks.get(8), "Closed"));
+        writes.update(copy(deleted, "Renamed before delete"));
+        assertTrue(writes.deleteById(deleted.getTrackId()));
+        assertEquals(1, writes.getPendingCount());
+
+        writes.close();
+        assertEquals("Closed", trackDAO.findById(tracks.get(8).getTrackId()).get().getName());
+        writes.update(copy(tracks.get(8), "After close"));
+        assertEquals(0, writes.getPendingCount());
+        assertEquals("After close", trackDAO.findById(tracks.get(8).getTrackId()).get().getName());
+    }
+
+    @Test
+    public void shouldKeepFailedUpdatesForTheNextFlush() throws SQLException {
+        try (WriteBehindCRUD<Track> writes = new WriteBehindCRUD<>(trackDAO, Track::getTrackId, 100, 100, NEVER)) {
+            writes.update(copy(tracks.get(9), null));
+            assertThrows(SQLException.class, writes::flush);
+            assertEquals(1, writes.getPendingCount());
+            assertEquals("Track 9", trackDAO.findById(tracks.get(9).getTrackId()).get().getName());
+
+            writes.update(copy(tracks.get(9), "Fixed"));
+            assertEquals(1, writes.flush());
+            assertEquals("Fixed", trackDAO.findById(tracks.get(9).getTrackId()).get().getName());
+        }
+    }
+
+    @Test
+    public void shouldRollBackAFlushThatFailsPartway() throws SQLException {
+        Track first = trackDAO.create(new Track("First", tracks.get(0).getAlbumId())).get();
+        Track second = trackDAO.create(new Track("Second", tracks.get(0).getAlbumId())).get();
+        TrackDAO oneByOne = new TrackDAO();
+        oneByOne.setBatchSize(1);
+        try (WriteBehindCRUD<Track> writes = new WriteBehindCRUD<>(oneByOne, Track::getTrackId, 100, 100, NEVER)) {
+            writes.update(copy(first, "Written first"));
+            writes.update(copy(second, null));
+            assertThrows(SQLException.class, writes::flush);
+            assertEquals("First", trackDAO.findById(first.getTrackId()).get().getName(), "A failed flush must commit nothing!");
+            assertEquals(2, writes.getPendingCount());
+            assertEquals(0, writes.getWrittenCount());
+
+            writes.deleteById(second.getTrackId());
+            assertEquals(1, writes.flush());
+            assertEquals("Written first", trackDAO.findById(first.getTrackId()).get().getName());
+        }
+    }
+
+    private static Track copy(Track track, String name) {
+        Track copy = new Track(name, track.getAlbumId());
+        copy.setTrackId(track.getTrackId());
+        return copy;
+    }
+
+    private static void awaitFlushed(WriteBehindCRUD<Track> writes) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writes.getPendingCount() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(0, writes.getPendingCount());
+    }
+
+    static class CountingTrackDAO extends TrackDAO {
+        final AtomicInteger updateAllCalls = new AtomicInteger();
+
+        @Override
+        public BatchResult<Track> updateAll(Collection<Track> tracks) throws SQLException {
+            updateAllCalls.incrementAndGet();
+            return super.updateAll(tracks);
+        }
+    }
+}
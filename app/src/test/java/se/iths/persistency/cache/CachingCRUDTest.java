@@ -0,0 +1,130 @@
+package se.iths.persistency.cache;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.model.Artist;
+
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingCRUDTest {
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("cachingcrud");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldAnswerRepeatedLookupsFromCache() throws SQLException {
+        CachingCRUD<Artist> artists = new CachingCRUD<>(new ArtistDAO(), Artist::getArtistId, new EntityCache<>(10));
+        Artist artist = new ArtistDAO().create(new Artist("Cached artist")).get();
+
+        Artist first = artists.findById(artist.getArtistId()).get();
+        Artist second = artists.findById(artist.getArtistId()).get();
+
+        assertSame(first, second);
+        assertEquals(1, artists.getStats().getMisses());
+        assertEquals(1, artists.getStats().getHits());
+    }
+
+    @Test
+    public void shouldInvalidateOnUpdateAndDelete() throws SQLException {
+        CachingCRUD<Artist> artists = new CachingCRUD<>(new ArtistDAO(), Artist::getArtistId, new EntityCache<>(10));
+        Artist artist = artists.create(new Artist("Before")).get();
+
+        artist.setName("After");
+        artists.update(artist);
+        assertEquals("After", artists.findById(artist.getArtistId()).get().getName());
+
+        assertTrue(artists.deleteById(artist.getArtistId()));
+        assertTrue(artists.findById(artist.getArtistId()).isEmpty());
+    }
+
+    @Test
+    public void shouldNotCacheLoadRacingWithUpdate() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ArtistDAO slowDAO = new ArtistDAO() {
+            @Override
+            public Optional<Artist> findById(long artistId) throws SQLException {
+                Optional<Artist> found = super.findById(artistId);
+                loaded.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return found;
+            }
+        };
+        CachingCRUD<Artist> artists = new CachingCRUD<>(slowDAO, Artist::getArtistId, new EntityCache<>(10));
+        Artist artist = new ArtistDAO().create(new Artist("Old")).get();
+
+        Thread reader = new Thread(() -> {
+            try {
+                artists.findById(artist.getArtistId());
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        reader.start();
+        loaded.await();
+        artist.setName("New");
+        artists.update(artist);
+        release.countDown();
+        reader.join();
+
+        assertEquals(0, artists.getStats().getSize(), "A load older than the update must not be cached!");
+        assertEquals("New", artists.findById(artist.getArtistId()).get().getName());
+    }
+
+    @Test
+    public void shouldShareCachedInstances() throws SQLException {
+        CachingCRUD<Artist> artists = new CachingCRUD<>(new ArtistDAO(), Artist::getArtistId, new EntityCache<>(10));
+        Artist artist = new ArtistDAO().create(new Artist("Shared")).get();
+
+        artists.findById(artist.getArtistId()).get().setName("Changed, not written");
+
+        assertEquals("Changed, not written", artists.findById(artist.getArtistId()).get().getName(),
+                "Callers share the cached instance!");
+        assertEquals("Shared", new ArtistDAO().findById(artist.getArtistId()).get().getName());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() {
+        EntityCache<String> cache = new EntityCache<>(2);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.get(1);
+        cache.put(3, "three");
+
+        assertEquals("one", cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(2, cache.getStats().getSize());
+    }
+
+    @Test
+    public void shouldExpireAfterTtl() throws InterruptedException {
+        EntityCache<String> cache = new EntityCache<>(10, 20, TimeUnit.MILLISECONDS);
+        cache.put(1, "one");
+        assertEquals("one", cache.get(1));
+
+        Thread.sleep(50);
+
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getStats().getExpirations());
+    }
+}
@@ -0,0 +1,79 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.BatchResult;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchWriteTest {
+    static ArtistDAO artistDAO = new ArtistDAO();
+    static AlbumDAO albumDAO = new AlbumDAO();
+    static TrackDAO trackDAO = new TrackDAO();
+    static Artist artist;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("batchwrite");
+        artist = artistDAO.create(new Artist("An artist")).get();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldCreateUpdateAndDeleteInBatches() throws SQLException {
+        Album album = albumDAO.create(new Album("An album", artist.getArtistId())).get();
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < 1_250; i++) {
+            tracks.add(new Track("Track " + i, album.getAlbumId()));
+        }
+
+        BatchResult<Track> created = trackDAO.createAll(tracks);
+        assertTrue(created.isComplete());
+        assertEquals(1_250, created.getAffectedRows());
+        for (Track track : tracks) {
+            assertEquals(track.getName(), trackDAO.findById(track.getTrackId()).get().getName(),
+                    "Generated ids must be set in order!");
+        }
+
+        tracks.forEach(track -> track.setName(track.getName() + "_updated"));
+        assertEquals(1_250, trackDAO.updateAll(tracks).getAffectedRows());
+        assertEquals("Track 7_updated", trackDAO.findById(tracks.get(7).getTrackId()).get().getName());
+
+        assertEquals(1_250, trackDAO.deleteAll(tracks).getAffectedRows());
+        assertTrue(trackDAO.findByAlbumId(album.getAlbumId()).isEmpty());
+    }
+
+    @Test
+    public void shouldReportFailedBatchAndContinue() throws SQLException {
+        AlbumDAO smallBatches = new AlbumDAO();
+        smallBatches.setBatchSize(2);
+        List<Album> albums = List.of(
+                new Album("First", artist.getArtistId()),
+                new Album("Second", artist.getArtistId()),
+                new Album("Missing artist", 999_999L),
+                new Album("Fourth", artist.getArtistId()),
+                new Album("Fifth", artist.getArtistId()));
+
+        BatchResult<Album> result = smallBatches.createAll(albums);
+
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(1, result.getFailures().get(0).getBatchIndex());
+        assertEquals(List.of(albums.get(2), albums.get(3)), result.getFailures().get(0).getBatch());
+        assertEquals(List.of(albums.get(0), albums.get(1), albums.get(4)), result.getSucceeded());
+        assertTrue(albumDAO.findById(albums.get(4).getAlbumId()).isPresent());
+    }
+}
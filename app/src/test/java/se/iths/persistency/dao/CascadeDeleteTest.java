@@ -0,0 +1,130 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.PoolMetrics;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CascadeDeleteTest {
+    static final ArtistDAO artistDAO = new ArtistDAO();
+    static final AlbumDAO albumDAO = new AlbumDAO();
+    static final TrackDAO trackDAO = new TrackDAO();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("cascadedelete");
+        // Stands in for Chinook tables like InvoiceLine that the cascade leaves alone
+        EmbeddedDatabase.execute("CREATE TABLE AlbumNote (AlbumId INT NOT NULL, FOREIGN KEY (AlbumId) REFERENCES Album (AlbumId))",
+                "CREATE TABLE TrackNote (TrackId INT NOT NULL, FOREIGN KEY (TrackId) REFERENCES Track (TrackId))");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldDeleteArtistWithConstantStatementCount() throws SQLException {
+        Artist small = createArtist("Small", 1, 2);
+        Artist large = createArtist("Large", 5, 40);
+
+        long before = statements();
+        assertTrue(artistDAO.deleteCascade(small.getArtistId()));
+        long smallStatements = statements() - before;
+        long playlistTracks = countPlaylistTracks();
+        before = statements();
+        long acquired = ConnectionHandler.metrics().getAcquireCount();
+        assertTrue(artistDAO.deleteCascade(large.getArtistId()));
+
+        assertEquals(4, smallStatements);
+        assertEquals(smallStatements, statements() - before, "Statement count must not depend on the row count!");
+        assertEquals(1, ConnectionHandler.metrics().getAcquireCount() - acquired);
+        assertTrue(artistDAO.findById(large.getArtistId()).isEmpty());
+        assertTrue(albumDAO.findByArtistId(large.getArtistId()).isEmpty());
+        assertEquals(playlistTracks - 5 * 40, countPlaylistTracks());
+        assertFalse(artistDAO.deleteCascade(large.getArtistId()));
+    }
+
+    @Test
+    public void shouldDeleteAlbumWithItsTracks() throws SQLException {
+        Artist artist = createArtist("Album owner", 2, 3);
+        List<Album> albums = new ArrayList<>(albumDAO.findByArtistId(artist.getArtistId()));
+
+        assertTrue(albumDAO.deleteCascade(albums.get(0).getAlbumId()));
+
+        assertTrue(trackDAO.findByAlbumId(albums.get(0).getAlbumId()).isEmpty());
+        assertEquals(3, trackDAO.findByAlbumId(albums.get(1).getAlbumId()).size());
+        assertEquals(1, albumDAO.findByArtistId(artist.getArtistId()).size());
+    }
+
+    @Test
+    public void shouldDeleteNothingWhenAStatementFails() throws SQLException {
+        Artist artist = createArtist("Referenced", 2, 3);
+        Album album = albumDAO.findByArtistId(artist.getArtistId()).iterator().next();
+        EmbeddedDatabase.execute("INSERT INTO AlbumNote (AlbumId) VALUES (" + album.getAlbumId() + ")");
+
+        assertThrows(SQLException.class, () -> artistDAO.deleteCascade(artist.getArtistId()));
+
+        assertEquals(3, trackDAO.findByAlbumId(album.getAlbumId()).size());
+        assertTrue(artistDAO.findById(artist.getArtistId()).isPresent());
+    }
+
+    @Test
+    public void shouldKeepPlaylistEntriesWhenATrackCantBeDeleted() throws SQLException {
+        Artist artist = createArtist("Track referenced", 1, 1);
+        Album album = albumDAO.findByArtistId(artist.getArtistId()).iterator().next();
+        Track track = trackDAO.findByAlbumId(album.getAlbumId()).iterator().next();
+        EmbeddedDatabase.execute("INSERT INTO TrackNote (TrackId) VALUES (" + track.getTrackId() + ")");
+        long playlistTracks = countPlaylistTracks();
+
+        assertThrows(SQLException.class, () -> trackDAO.deleteById(track.getTrackId()));
+
+        assertEquals(playlistTracks, countPlaylistTracks(), "The playlist entry must not go without its track!");
+        assertTrue(trackDAO.findById(track.getTrackId()).isPresent());
+    }
+
+    private static Artist createArtist(String name, int albums, int tracksPerAlbum) throws SQLException {
+        Artist artist = artistDAO.create(new Artist(name)).get();
+        for (int a = 0; a < albums; a++) {
+            Album album = albumDAO.create(new Album(name + " " + a, artist.getArtistId())).get();
+            List<Track> tracks = new ArrayList<>();
+            for (int t = 0; t < tracksPerAlbum; t++) tracks.add(new Track(name + " " + a + "-" + t, album.getAlbumId()));
+            trackDAO.createAll(tracks);
+            for (Track track : tracks) {
+                EmbeddedDatabase.execute("INSERT INTO PlaylistTrack (PlaylistId, TrackId) VALUES (1, " + track.getTrackId() + ")");
+            }
+        }
+        return artist;
+    }
+
+    private static long countPlaylistTracks() throws SQLException {
+        Connection con = ConnectionHandler.connect();
+        Statement stmt = con.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM PlaylistTrack");
+        rs.next();
+        long count = rs.getLong(1);
+        ConnectionHandler.close(rs);
+        ConnectionHandler.close(stmt);
+        ConnectionHandler.close(con);
+        return count;
+    }
+
+    private static long statements() {
+        PoolMetrics metrics = ConnectionHandler.metrics();
+        return metrics.getStatementCacheHits() + metrics.getStatementCacheMisses();
+    }
+}
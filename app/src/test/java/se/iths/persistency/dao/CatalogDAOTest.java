@@ -0,0 +1,77 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogDAOTest {
+    static CatalogDAO catalogDAO = new CatalogDAO();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("catalog");
+        EmbeddedDatabase.execute(
+                "INSERT INTO Artist (Name) VALUES ('Artist 1'), ('Artist 2'), ('Artist without albums')",
+                "INSERT INTO Album (Title, ArtistId) VALUES ('Album 1', 1), ('Album 2', 1), ('Album 3', 2)",
+                "INSERT INTO Track (Name, AlbumId, MediaTypeId, Milliseconds, UnitPrice) VALUES"
+                        + " ('Track 1', 1, 1, 1, 0.99), ('Track 2', 1, 1, 1, 0.99), ('Track 3', 3, 1, 1, 0.99)");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldLoadWholeTree() throws SQLException {
+        Collection<Artist> artists = catalogDAO.findAll();
+
+        assertEquals(3, artists.size());
+        int albums = 0;
+        int tracks = 0;
+        for (Artist artist : artists) {
+            albums += artist.getAlbums().size();
+            for (Album album : artist.getAlbums()) tracks += album.getTracks().size();
+        }
+        assertEquals(3, albums);
+        assertEquals(3, tracks);
+    }
+
+    @Test
+    public void shouldLoadOneArtist() throws SQLException {
+        Optional<Artist> artist = catalogDAO.findByArtistId(1);
+
+        assertEquals("Artist 1", artist.get().getName());
+        assertEquals(2, artist.get().getAlbums().size());
+    }
+
+    @Test
+    public void shouldLoadArtistWithoutAlbums() throws SQLException {
+        Optional<Artist> artist = catalogDAO.findByArtistId(3);
+
+        assertTrue(artist.isPresent());
+        assertTrue(artist.get().getAlbums().isEmpty());
+    }
+
+    @Test
+    public void shouldLoadSetOfArtists() throws SQLException {
+        Collection<Artist> artists = catalogDAO.findByArtistIds(List.of(2L, 3L));
+
+        assertEquals(2, artists.size());
+    }
+
+    @Test
+    public void shouldNotFindArtistByFaultyId() throws SQLException {
+        assertTrue(catalogDAO.findByArtistId(-1).isEmpty());
+    }
+}
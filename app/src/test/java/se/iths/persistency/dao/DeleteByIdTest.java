@@ -0,0 +1,62 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeleteByIdTest {
+    static ArtistDAO artistDAO = new ArtistDAO();
+    static AlbumDAO albumDAO = new AlbumDAO();
+    static TrackDAO trackDAO = new TrackDAO();
+    static Album album;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("deletebyid");
+        Artist artist = artistDAO.create(new Artist("An artist")).get();
+        album = albumDAO.create(new Album("An album", artist.getArtistId())).get();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldReportDeleteFromUpdateCount() throws SQLException {
+        Track track = trackDAO.create(new Track("A track", album.getAlbumId())).get();
+        EmbeddedDatabase.execute("INSERT INTO PlaylistTrack (PlaylistId, TrackId) VALUES (1, " + track.getTrackId() + ")");
+
+        assertTrue(trackDAO.deleteById(track.getTrackId()));
+        assertFalse(trackDAO.deleteById(track.getTrackId()), "Deleting a missing track must report false!");
+        assertTrue(trackDAO.findById(track.getTrackId()).isEmpty());
+    }
+
+    @Test
+    public void shouldDeleteTracksInBatch() throws SQLException {
+        Collection<Long> trackIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            trackIds.add(trackDAO.create(new Track("Track " + i, album.getAlbumId())).get().getTrackId());
+        }
+
+        assertEquals(20, trackDAO.deleteByIds(trackIds));
+        assertEquals(0, trackDAO.deleteByIds(trackIds));
+    }
+
+    @Test
+    public void shouldNotDeleteMissingAlbum() throws SQLException {
+        assertFalse(albumDAO.deleteById(-1));
+        assertEquals(0, albumDAO.deleteByIds(List.of(-1L, -2L)));
+    }
+}
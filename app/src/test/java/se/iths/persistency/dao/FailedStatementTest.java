@@ -0,0 +1,57 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.PoolConfig;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FailedStatementTest {
+    static ArtistDAO artistDAO = new ArtistDAO();
+    static AlbumDAO albumDAO = new AlbumDAO();
+    static TrackDAO trackDAO = new TrackDAO();
+    static Artist artist;
+    static Album album;
+    static Track track;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("failedstatement");
+        PoolConfig config = new PoolConfig("jdbc:h2:mem:failedstatement;DB_CLOSE_DELAY=-1", "sa", "");
+        config.setMinSize(0);
+        config.setMaxSize(2);
+        config.setAcquireTimeoutMillis(200);
+        ConnectionHandler.configure(config);
+        artist = artistDAO.create(new Artist("An artist")).get();
+        album = albumDAO.create(new Album("An album", artist.getArtistId())).get();
+        track = trackDAO.create(new Track("A track", album.getAlbumId())).get();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldReturnConnectionsWhenStatementsFail() throws SQLException {
+        Track unnamed = new Track(null, album.getAlbumId());
+        unnamed.setTrackId(track.getTrackId());
+        for (int i = 0; i < 5; i++) {
+            assertThrows(SQLException.class, () -> artistDAO.deleteById(artist.getArtistId()));
+            assertThrows(SQLException.class, () -> albumDAO.deleteById(album.getAlbumId()));
+            assertThrows(SQLException.class, () -> albumDAO.create(new Album("No such artist", (long) Integer.MAX_VALUE)));
+            assertThrows(SQLException.class, () -> trackDAO.update(unnamed));
+        }
+
+        assertEquals(0, ConnectionHandler.metrics().getActive(), "Failed statements must hand their connections back!");
+        assertEquals("An artist", artistDAO.findById(artist.getArtistId()).get().getName());
+    }
+}
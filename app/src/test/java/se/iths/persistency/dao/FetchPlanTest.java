@@ -0,0 +1,78 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.FetchPlan;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FetchPlanTest {
+    static CatalogDAO catalogDAO = new CatalogDAO();
+    static Artist artist;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("fetchplan");
+        artist = new ArtistDAO().create(new Artist("Lazy artist")).get();
+        for (int a = 0; a < 3; a++) {
+            Album album = new AlbumDAO().create(new Album("Album " + a, artist.getArtistId())).get();
+            for (int t = 0; t < 4; t++) {
+                new TrackDAO().create(new Track("Track " + a + "-" + t, album.getAlbumId()));
+            }
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldLoadArtistOnlyWithOneQuery() throws SQLException {
+        long before = queries();
+        Artist found = catalogDAO.findByArtistId(artist.getArtistId(), FetchPlan.ARTIST_ONLY).get();
+
+        assertEquals("Lazy artist", found.getName());
+        assertEquals(1, queries() - before);
+        assertFalse(found.isAlbumsLoaded());
+
+        assertEquals(3, found.getAlbums().size());
+        assertEquals(2, queries() - before);
+        for (Album album : found.getAlbums()) {
+            assertEquals(4, album.getTracks().size());
+        }
+        assertEquals(3, queries() - before, "Tracks of all albums must load with one query!");
+    }
+
+    @Test
+    public void shouldLoadAlbumsWithLazyTracks() throws SQLException {
+        Artist found = catalogDAO.findByArtistId(artist.getArtistId(), FetchPlan.WITH_ALBUMS).get();
+
+        assertTrue(found.isAlbumsLoaded());
+        Album album = found.getAlbums().iterator().next();
+        assertFalse(album.isTracksLoaded());
+        assertEquals(4, album.getTracks().size());
+    }
+
+    @Test
+    public void shouldLoadWholeTreeWhenDeep() throws SQLException {
+        long before = queries();
+        Artist found = catalogDAO.findByArtistId(artist.getArtistId(), FetchPlan.DEEP).get();
+
+        assertEquals(12, found.getAlbums().stream().mapToInt(album -> album.getTracks().size()).sum());
+        assertEquals(1, queries() - before);
+        assertTrue(catalogDAO.findByArtistId(-1, FetchPlan.ARTIST_ONLY).isEmpty());
+    }
+
+    private static long queries() {
+        return ConnectionHandler.metrics().getAcquireCount();
+    }
+}
@@ -0,0 +1,77 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FindByIdsTest {
+    static final int TRACKS = 1_200;
+    static TrackDAO trackDAO = new TrackDAO();
+    static List<Track> tracks = new ArrayList<>();
+    static Album first;
+    static Album second;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("findbyids");
+        Artist artist = new ArtistDAO().create(new Artist("Many tracks")).get();
+        first = new AlbumDAO().create(new Album("First", artist.getArtistId())).get();
+        second = new AlbumDAO().create(new Album("Second", artist.getArtistId())).get();
+        for (int i = 0; i < TRACKS; i++) {
+            tracks.add(new Track("Track " + i, i < 1_000 ? first.getAlbumId() : second.getAlbumId()));
+        }
+        trackDAO.createAll(tracks);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldResolveManyIdsOnOneConnection() throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        for (Track track : tracks) ids.add(track.getTrackId());
+        ids.add(tracks.get(0).getTrackId());
+        ids.add(-1L);
+        long acquiredBefore = ConnectionHandler.metrics().getAcquireCount();
+
+        Map<Long, Track> found = trackDAO.findByIds(ids);
+
+        assertEquals(1, ConnectionHandler.metrics().getAcquireCount() - acquiredBefore);
+        assertEquals(TRACKS, found.size());
+        for (Track track : tracks) {
+            assertEquals(track.getName(), found.get(track.getTrackId()).getName());
+        }
+    }
+
+    @Test
+    public void shouldGroupChildrenByParentId() throws SQLException {
+        Map<Long, List<Track>> byAlbum = trackDAO.findByAlbumIds(List.of(first.getAlbumId(), second.getAlbumId(), -1L));
+
+        assertEquals(2, byAlbum.size());
+        assertEquals(1_000, byAlbum.get(first.getAlbumId()).size());
+        assertEquals(200, byAlbum.get(second.getAlbumId()).size());
+        assertEquals(2, new AlbumDAO().findByArtistIds(List.of(first.getArtistId())).get(first.getArtistId()).size());
+    }
+
+    @Test
+    public void shouldHandleSmallAndEmptyIdSets() throws SQLException {
+        assertTrue(new ArtistDAO().findByIds().isEmpty());
+        Map<Long, Album> albums = new AlbumDAO().findByIds(first.getAlbumId(), second.getAlbumId());
+        assertEquals("First", albums.get(first.getAlbumId()).getTitle());
+        assertEquals("Second", albums.get(second.getAlbumId()).getTitle());
+    }
+}
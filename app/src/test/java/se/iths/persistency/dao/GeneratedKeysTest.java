@@ -0,0 +1,82 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeneratedKeysTest {
+    static final int THREADS = 8;
+    static final int INSERTS_PER_THREAD = 250;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("generatedkeys");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldReturnOwnIdUnderConcurrentInserts() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<Artist>>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                ArtistDAO artistDAO = new ArtistDAO();
+                List<Artist> created = new ArrayList<>();
+                for (int i = 0; i < INSERTS_PER_THREAD; i++) {
+                    created.add(artistDAO.create(new Artist("Artist " + thread + "-" + i)).get());
+                }
+                return created;
+            }));
+        }
+        List<Artist> created = new ArrayList<>();
+        for (Future<List<Artist>> result : results) created.addAll(result.get());
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        System.out.printf("%d concurrent inserts in %d ms (%.0f rows/s)%n",
+                created.size(), elapsed / 1_000_000, created.size() * 1e9 / elapsed);
+
+        ArtistDAO artistDAO = new ArtistDAO();
+        Set<Long> ids = new HashSet<>();
+        for (Artist artist : created) {
+            assertTrue(ids.add(artist.getArtistId()), "Every insert must get its own id!");
+            assertEquals(artist.getName(), artistDAO.findById(artist.getArtistId()).get().getName(),
+                    "Generated id must belong to the inserted row!");
+        }
+    }
+
+    @Test
+    public void shouldSetIdsInOrderForMultiRowInsert() throws SQLException {
+        Artist artist = new ArtistDAO().create(new Artist("Multi row artist")).get();
+        List<Album> albums = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            albums.add(new Album("Album " + i, artist.getArtistId()));
+        }
+
+        new AlbumDAO().createAll(albums);
+
+        AlbumDAO albumDAO = new AlbumDAO();
+        for (Album album : albums) {
+            assertEquals(album.getTitle(), albumDAO.findById(album.getAlbumId()).get().getTitle());
+        }
+    }
+}
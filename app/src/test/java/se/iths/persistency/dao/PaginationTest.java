@@ -0,0 +1,85 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.Page;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaginationTest {
+    static final int TRACKS = 2_500;
+    static TrackDAO trackDAO = new TrackDAO();
+    static Album album;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("pagination");
+        Artist artist = new ArtistDAO().create(new Artist("Paged artist")).get();
+        album = new AlbumDAO().create(new Album("Paged album", artist.getArtistId())).get();
+        Album other = new AlbumDAO().create(new Album("Other album", artist.getArtistId())).get();
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < TRACKS; i++) {
+            tracks.add(new Track("Track " + i, i % 2 == 0 ? album.getAlbumId() : other.getAlbumId()));
+        }
+        trackDAO.createAll(tracks);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldPageThroughAllRowsInIdOrder() throws SQLException {
+        Set<Long> seen = new HashSet<>();
+        int pages = 0;
+        String token = null;
+        long previousId = 0L;
+        do {
+            Page<Track> page = trackDAO.findPage(Page.afterId(token), 1_000);
+            for (Track track : page.getItems()) {
+                assertTrue(track.getTrackId() > previousId, "Pages must be ordered by id!");
+                previousId = track.getTrackId();
+                assertTrue(seen.add(track.getTrackId()));
+            }
+            token = page.getContinuationToken();
+            pages++;
+        } while (token != null);
+
+        assertEquals(TRACKS, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    public void shouldPageWithinParent() throws SQLException {
+        Page<Track> first = trackDAO.findPageByParent(album.getAlbumId(), 0L, 1_000);
+        Page<Track> second = trackDAO.findPageByParent(album.getAlbumId(), first.getLastId(), 1_000);
+
+        assertTrue(first.hasNext());
+        assertFalse(second.hasNext());
+        assertNull(second.getContinuationToken());
+        assertEquals(TRACKS / 2, first.getItems().size() + second.getItems().size());
+        assertTrue(second.getItems().stream().allMatch(track -> track.getAlbumId() == album.getAlbumId()));
+    }
+
+    @Test
+    public void shouldReturnEmptyLastPage() throws SQLException {
+        Page<Artist> page = new ArtistDAO().findPage(Long.MAX_VALUE - 1, 10);
+
+        assertTrue(page.getItems().isEmpty());
+        assertFalse(page.hasNext());
+        assertThrows(IllegalArgumentException.class, () -> new ArtistDAO().findPage(0L, 0));
+        assertThrows(IllegalArgumentException.class, () -> Page.afterId("not a token"));
+    }
+}
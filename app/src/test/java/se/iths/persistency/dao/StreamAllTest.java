@@ -0,0 +1,64 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamAllTest {
+    static final int TRACKS = 5_000;
+    static TrackDAO trackDAO = new TrackDAO();
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("streamall");
+        Artist artist = new ArtistDAO().create(new Artist("An artist")).get();
+        Album album = new AlbumDAO().create(new Album("An album", artist.getArtistId())).get();
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < TRACKS; i++) {
+            tracks.add(new Track("Track " + i, album.getAlbumId()));
+        }
+        trackDAO.createAll(tracks);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldStreamAllRows() throws SQLException {
+        try (Stream<Track> tracks = trackDAO.streamAll()) {
+            assertEquals(TRACKS, tracks.count());
+        }
+        assertEquals(0, ConnectionHandler.metrics().getActive(), "Connection must be returned when stream is closed!");
+    }
+
+    @Test
+    public void shouldReturnConnectionWhenClosedEarly() throws SQLException {
+        try (Stream<Track> tracks = trackDAO.streamAll()) {
+            assertEquals(10, tracks.limit(10).count());
+            assertEquals(1, ConnectionHandler.metrics().getActive());
+        }
+        assertEquals(0, ConnectionHandler.metrics().getActive(), "Connection must be returned when stream is closed!");
+    }
+
+    @Test
+    public void shouldReturnConnectionWhenExhausted() throws SQLException {
+        Stream<Track> tracks = trackDAO.streamAll();
+        tracks.forEach(track -> assertTrue(track.getTrackId() > 0));
+
+        assertEquals(0, ConnectionHandler.metrics().getActive(), "Connection must be returned when stream is exhausted!");
+    }
+}
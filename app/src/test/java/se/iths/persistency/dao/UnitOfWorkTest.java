@@ -0,0 +1,106 @@
+package se.iths.persistency.dao;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.TransactionTemplate;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnitOfWorkTest {
+    static final TrackDAO trackDAO = new TrackDAO();
+    static final AlbumDAO albumDAO = new AlbumDAO();
+    static Album album;
+    static Track first;
+    static Track second;
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("unitofwork");
+        Artist artist = new ArtistDAO().create(new Artist("Artist")).get();
+        album = albumDAO.create(new Album("Album", artist.getArtistId())).get();
+        first = trackDAO.create(new Track("First", album.getAlbumId())).get();
+        second = trackDAO.create(new Track("Second", album.getAlbumId())).get();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldWriteOnlyChangedEntitiesInOneTransaction() throws SQLException {
+        UnitOfWork work = new UnitOfWork();
+        work.register(album);
+        work.register(first);
+        work.register(second);
+        assertFalse(work.isDirty());
+        long before = queries();
+        assertEquals(0, work.commit());
+        assertEquals(0, queries() - before, "Nothing changed, nothing to write!");
+
+        first.setName("First renamed");
+        second.setName("Second renamed");
+        album.setTitle("Album renamed");
+        assertEquals(List.of(album), work.getDirty(Album.class));
+        assertEquals(2, work.getDirty(Track.class).size());
+
+        before = queries();
+        assertEquals(3, work.commit());
+        assertEquals(1, queries() - before);
+        assertFalse(work.isDirty());
+        assertEquals("First renamed", trackDAO.findById(first.getTrackId()).get().getName());
+        assertEquals("Album renamed", albumDAO.findById(album.getAlbumId()).get().getTitle());
+
+        first.setName("First again");
+        assertEquals(1, work.commit(), "The held entity must be committed again without a refetch!");
+        assertEquals("First again", trackDAO.findById(first.getTrackId()).get().getName());
+    }
+
+    @Test
+    public void shouldRollBackAllChangesWhenOneFails() throws SQLException {
+        Track track = trackDAO.create(new Track("Kept", album.getAlbumId())).get();
+        Album failing = albumDAO.create(new Album("Kept too", album.getArtistId())).get();
+        UnitOfWork work = new UnitOfWork();
+        work.register(track).setName("Lost");
+        work.register(failing).setTitle(null);
+
+        assertThrows(SQLException.class, work::commit);
+
+        assertEquals("Kept", trackDAO.findById(track.getTrackId()).get().getName());
+        assertEquals("Kept too", albumDAO.findById(failing.getAlbumId()).get().getTitle());
+        assertTrue(work.isDirty());
+    }
+
+    @Test
+    public void shouldStayDirtyWhenTheEnclosingTransactionRollsBack() throws SQLException {
+        Track track = trackDAO.create(new Track("Joined", album.getAlbumId())).get();
+        UnitOfWork work = new UnitOfWork();
+        work.register(track).setName("Rolled back");
+
+        TransactionTemplate.inTransaction(ctx -> {
+            assertEquals(1, work.commit());
+            assertTrue(work.isDirty(), "Nothing is committed until the enclosing transaction is!");
+            ctx.setRollbackOnly();
+            return null;
+        });
+        assertEquals("Joined", trackDAO.findById(track.getTrackId()).get().getName());
+        assertTrue(work.isDirty());
+
+        TransactionTemplate.inTransaction(ctx -> work.commit());
+        assertFalse(work.isDirty());
+        assertEquals("Rolled back", trackDAO.findById(track.getTrackId()).get().getName());
+    }
+
+    private static long queries() {
+        return ConnectionHandler.metrics().getAcquireCount();
+    }
+}
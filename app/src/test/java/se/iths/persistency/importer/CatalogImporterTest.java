@@ -0,0 +1,75 @@
+package se.iths.persistency.importer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogImporterTest {
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        EmbeddedDatabase.start("importer");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldImportChinookDump() throws IOException, SQLException {
+        CatalogImporter importer = new CatalogImporter();
+        importer.setBatchSize(100);
+
+        ImportReport report = importer.importFrom(new SqlInsertSource(Path.of(System.getProperty("chinook.dump", "../db_auto.sql"))));
+        System.out.println(report);
+
+        assertEquals(275, report.getImported("Artist"));
+        assertEquals(347, report.getImported("Album"));
+        assertEquals(3503, report.getImported("Track"));
+        assertEquals(3503, new TrackDAO().findAll().size());
+        Collection<Album> acdc = new AlbumDAO().findByArtistId(findArtist("AC/DC").getArtistId());
+        assertEquals(2, acdc.size());
+        assertNotNull(findArtist("Guns N' Roses"));
+    }
+
+    @Test
+    public void shouldImportCsvAndRejectOrphans(@TempDir Path directory) throws IOException, SQLException {
+        Files.writeString(directory.resolve("Artist.csv"), "ArtistId,Name\n10,\"Crosby, Stills & Nash\"\n20,\"The \"\"Band\"\"\"\n");
+        Files.writeString(directory.resolve("Album.csv"), "AlbumId,Title,ArtistId\n5,D\u00e9j\u00e0 Vu,10\n6,Orphan,99\n");
+        Files.writeString(directory.resolve("Track.csv"), "TrackId,Name,AlbumId\n1,Carry On,5\n2,\"Teach Your\nChildren\",5\n3,Lost,6\n");
+
+        ImportReport report = new CatalogImporter().importFrom(new CsvSource(directory));
+
+        assertEquals(2, report.getImported("Artist"));
+        assertEquals(1, report.getImported("Album"));
+        assertEquals(1, report.getRejected("Album"));
+        assertEquals(2, report.getImported("Track"));
+        assertEquals(1, report.getRejected("Track"));
+        Artist csn = findArtist("Crosby, Stills & Nash");
+        Album album = new AlbumDAO().findByArtistId(csn.getArtistId()).iterator().next();
+        assertEquals("D\u00e9j\u00e0 Vu", album.getTitle());
+        assertTrue(new TrackDAO().findByAlbumId(album.getAlbumId()).stream()
+                .anyMatch(track -> track.getName().equals("Teach Your\nChildren")));
+        assertNotNull(findArtist("The \"Band\""));
+    }
+
+    private static Artist findArtist(String name) throws SQLException {
+        return new ArtistDAO().findAll().stream().filter(artist -> name.equals(artist.getName())).findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,75 @@
+package se.iths.persistency.metrics;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.model.Artist;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+    static MetricsRegistry registry = new MetricsRegistry();
+    static InstrumentedCRUD<Artist> artists = new InstrumentedCRUD<>(new ArtistDAO());
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("metrics");
+        Metrics.addListener(registry);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        Metrics.removeListener(registry);
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldRecordCallsRowsAndErrors() throws SQLException {
+        Artist artist = artists.create(new Artist("Measured artist")).get();
+        artists.findById(artist.getArtistId());
+        artists.findById(-1);
+        artists.createAll(List.of(new Artist("One"), new Artist("Two")));
+        try (Stream<Artist> all = artists.streamAll()) {
+            assertEquals(3, all.count());
+        }
+        assertThrows(SQLException.class, () -> artists.call("broken", () -> {
+            throw new SQLException("Broken query");
+        }, result -> 0L));
+
+        OperationStats findById = registry.getOperations().get("ArtistDAO.findById");
+        assertEquals(2, findById.getCalls());
+        assertEquals(1, findById.getRowsRead());
+        assertEquals(1, registry.getOperations().get("ArtistDAO.create").getRowsWritten());
+        assertEquals(2, registry.getOperations().get("ArtistDAO.createAll").getRowsWritten());
+        assertEquals(3, registry.getOperations().get("ArtistDAO.streamAll.read").getRowsRead());
+        assertEquals(1, registry.getOperations().get("ArtistDAO.broken").getErrors());
+        assertTrue(findById.getLatencyMicros(99.0) > 0);
+        assertTrue(registry.getConnectionAcquire().getCalls() >= 4, "Connection acquire time must be recorded!");
+    }
+
+    @Test
+    public void shouldScrapeAsPlainTextAndJmx() throws Exception {
+        artists.findAll();
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("dao_calls_total{dao=\"ArtistDAO\",operation=\"findAll\"}"));
+        assertTrue(scrape.contains("dao_latency_micros{dao=\"ArtistDAO\",operation=\"findAll\",quantile=\"0.999\"}"));
+        assertTrue(scrape.contains("connection_acquire_calls_total{}"));
+
+        registry.registerMBean();
+        try {
+            Object calls = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(MetricsRegistry.OBJECT_NAME), "Calls");
+            assertEquals(registry.getCalls(), calls);
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(MetricsRegistry.OBJECT_NAME));
+        }
+    }
+}
@@ -1,4 +1,59 @@
 package se.iths.persistency.model;
 
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 public class ArtistTest {
+
+    @Test
+    public void shouldPrintWithoutLoadingAlbums() {
+        Artist artist = new Artist("Lazy");
+        artist.setArtistId(1L);
+        artist.setAlbumLoader(() -> {
+            throw new SQLException("Printing must not load albums!");
+        });
+
+        assertEquals("1: Lazy", artist.toString());
+        assertFalse(artist.isAlbumsLoaded());
+    }
+
+    @Test
+    public void shouldKeepAlbumsAddedWhileLoading() throws InterruptedException {
+        Artist artist = new Artist("Loading");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        artist.setAlbumLoader(() -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(album(1, "Loaded"));
+        });
+
+        Thread reader = new Thread(artist::getAlbums);
+        reader.start();
+        loading.await();
+        Thread writer = new Thread(() -> artist.addAll(List.of(album(2, "Added"))));
+        writer.start();
+        Thread.sleep(100);
+        release.countDown();
+        reader.join();
+        writer.join();
+
+        assertEquals(List.of("Added"), artist.getAlbums().stream().map(Album::getTitle).collect(Collectors.toList()));
+    }
+
+    private static Album album(long albumId, String title) {
+        Album album = new Album(title, 1L);
+        album.setAlbumId(albumId);
+        return album;
+    }
 }
@@ -0,0 +1,58 @@
+package se.iths.persistency.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongArrayMapTest {
+
+    @Test
+    public void shouldKeepValuesInKeyOrder() {
+        LongArrayMap<String> map = new LongArrayMap<>();
+        map.put(30, "thirty");
+        map.put(10, "ten");
+        map.put(20, "twenty");
+        map.put(10, "TEN");
+
+        assertEquals(3, map.size());
+        assertEquals("TEN", map.get(10));
+        assertNull(map.get(15));
+        assertEquals(List.of("TEN", "twenty", "thirty"), new ArrayList<>(map.values()));
+    }
+
+    @Test
+    public void shouldRemoveReplaceAndClear() {
+        LongArrayMap<String> map = new LongArrayMap<>();
+        map.replaceAll(new long[]{3, 1, 2, 1}, new Object[]{"three", "one", "two", "ONE"});
+        assertEquals(List.of("ONE", "two", "three"), new ArrayList<>(map.values()));
+
+        map.remove(2);
+        map.replace(4, "four");
+        map.replace(3, "THREE");
+        map.putIfAbsent(1, "uno");
+        assertEquals(List.of("ONE", "THREE"), new ArrayList<>(map.values()));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void shouldIterateSnapshotWhileModified() {
+        Album album = new Album("Album", 1L);
+        for (long id = 1; id <= 5; id++) {
+            Track track = new Track("Track " + id, 1L);
+            track.setTrackId(id);
+            album.add(track);
+        }
+        int seen = 0;
+        for (Track track : album.getTracks()) {
+            album.remove(track);
+            seen++;
+        }
+        assertEquals(5, seen);
+        assertTrue(album.getTracks().isEmpty());
+    }
+}
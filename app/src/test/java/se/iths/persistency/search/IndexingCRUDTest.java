@@ -0,0 +1,58 @@
+package se.iths.persistency.search;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexingCRUDTest {
+
+    @BeforeAll
+    public static void setUp() throws SQLException {
+        EmbeddedDatabase.start("indexingcrud");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldFollowWritesMadeThroughTheDaos() throws Exception {
+        SearchIndex index = new SearchIndex();
+        IndexingCRUD<Artist> artists = IndexingCRUD.artists(new ArtistDAO(), index);
+        IndexingCRUD<Album> albums = IndexingCRUD.albums(new AlbumDAO(), index);
+        IndexingCRUD<Track> tracks = IndexingCRUD.tracks(new TrackDAO(), index);
+
+        Artist artist = artists.create(new Artist("Pink Floyd")).get();
+        Album album = albums.create(new Album("The Wall", artist.getArtistId())).get();
+        Track track = tracks.create(new Track("Mother", album.getAlbumId())).get();
+        tracks.createAll(List.of(new Track("Hey You", album.getAlbumId()), new Track("Comfortably Numb", album.getAlbumId())));
+        assertEquals(5, index.size());
+
+        SearchHit hit = index.complete("moth", 1).get(0);
+        assertEquals(track.getTrackId(), hit.getId());
+        assertEquals(List.of(album.getAlbumId(), artist.getArtistId()), List.of(hit.getParents().get(0).getId(), hit.getParents().get(1).getId()));
+
+        track.setName("Goodbye Blue Sky");
+        tracks.update(track);
+        assertTrue(index.complete("moth", 1).isEmpty());
+        assertEquals(track.getTrackId(), index.search("blue sky", 1).get(0).getId());
+
+        assertTrue(tracks.delete(track));
+        assertTrue(index.search("blue", 1).isEmpty());
+        assertFalse(tracks.deleteById(track.getTrackId()));
+        assertEquals(4, index.size());
+    }
+}
@@ -0,0 +1,148 @@
+package se.iths.persistency.search;
+
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchIndexTest {
+
+    @Test
+    public void shouldRankRareTokensAndShortNamesFirst() {
+        SearchIndex index = new SearchIndex();
+        index.putTree(artist(1, "Beyonc\u00e9", album(10, 1, "Love Songs", track(100, 10, "Crazy in Love"), track(101, 10, "Love on Top"))));
+        index.putTree(artist(2, "Love", album(20, 2, "Forever Changes", track(200, 20, "Alone Again Or"))));
+
+        List<SearchHit> hits = index.search("love", 10);
+        assertEquals(List.of("Love", "Love Songs", "Love on Top", "Crazy in Love"), names(hits));
+        assertEquals("Love on Top", index.search("top love", 1).get(0).getName());
+        assertEquals("Beyonc\u00e9", index.search("BEYONCE", 1).get(0).getName());
+
+        SearchHit track = index.search("crazy", 1).get(0);
+        assertEquals(EntityType.TRACK, track.getType());
+        assertEquals(List.of("Love Songs", "Beyonc\u00e9"), track.getParents().stream().map(SearchEntry::getName).collect(Collectors.toList()));
+        assertTrue(index.search("lov", 10).isEmpty(), "Search matches whole tokens!");
+    }
+
+    @Test
+    public void shouldCompletePrefixes() {
+        SearchIndex index = new SearchIndex();
+        index.putTree(artist(1, "Led Zeppelin", album(10, 1, "Led Zeppelin IV", track(100, 10, "Stairway to Heaven"), track(101, 10, "Black Dog"))));
+        index.putTree(artist(2, "Black Sabbath", album(20, 2, "Paranoid", track(200, 20, "War Pigs"))));
+
+        assertEquals(List.of("Black Dog", "Black Sabbath"), names(index.complete("bla", 5)));
+        assertEquals(List.of("Led Zeppelin", "Led Zeppelin IV"), names(index.complete("zep", 5)));
+        assertEquals(List.of("Led Zeppelin IV"), names(index.complete("zeppelin i", 5)));
+        assertEquals(List.of("Black Sabbath"), names(index.complete("black s", 5)));
+        assertTrue(index.complete("xyz", 5).isEmpty());
+        assertTrue(index.complete("  ", 5).isEmpty());
+
+        index.put(track(102, 10, "Blah"));
+        assertEquals("Blah", index.complete("bla", 5).get(0).getName(), "A kept list must follow adds!");
+        index.remove(EntityType.TRACK, 102);
+        index.put(track(101, 10, "White Dog"));
+        assertEquals(List.of("Black Sabbath"), names(index.complete("bla", 5)), "A kept list must follow renames!");
+    }
+
+    @Test
+    public void shouldRemoveEverythingBelowAnEntry() {
+        SearchIndex index = new SearchIndex();
+        index.putTree(artist(1, "Queen", album(10, 1, "A Night at the Opera", track(100, 10, "Bohemian Rhapsody"))));
+        index.putTree(artist(2, "Queens of the Stone Age", album(20, 2, "Songs for the Deaf", track(200, 20, "No One Knows"))));
+        assertEquals(6, index.size());
+
+        assertTrue(index.remove(EntityType.ARTIST, 1));
+        assertFalse(index.remove(EntityType.ARTIST, 1));
+        assertEquals(3, index.size());
+        assertTrue(index.search("bohemian", 5).isEmpty());
+        assertEquals(List.of("Queens of the Stone Age"), names(index.complete("que", 5)));
+
+        index.putTree(artist(2, "QOTSA"));
+        assertEquals(1, index.size(), "putTree must drop what the artist no longer has!");
+    }
+
+    @Test
+    public void shouldCompleteFullLimitAfterRemovals() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 1; i <= 100; i++) index.put(track(i, 1, "song" + i));
+        assertEquals(PrefixTrie.BEST_SIZE, index.complete("so", PrefixTrie.BEST_SIZE).size());
+
+        for (int i = 1; i <= 20; i++) {
+            index.remove(EntityType.TRACK, i);
+            assertEquals(PrefixTrie.BEST_SIZE, index.complete("so", PrefixTrie.BEST_SIZE).size(),
+                    "A kept list shortened by removals must not cut completions short!");
+        }
+        for (int i = 21; i <= 90; i++) index.remove(EntityType.TRACK, i);
+        assertEquals(10, index.complete("so", PrefixTrie.BEST_SIZE).size());
+    }
+
+    @Test
+    public void shouldKeepCompletionsRightThroughRandomChanges() {
+        SearchIndex index = new SearchIndex();
+        Map<Long, String> names = new HashMap<>();
+        Random random = new Random(42);
+        String[] words = {"a", "ab", "abc", "abd", "b", "ba", "bab", "c", "ca", "cab", "abba", "acdc"};
+        String[] prefixes = {"a", "ab", "b", "c", "ca"};
+        for (int step = 0; step < 5_000; step++) {
+            long id = random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                index.remove(EntityType.TRACK, id);
+                names.remove(id);
+            } else {
+                String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + "x".repeat(random.nextInt(4));
+                index.put(track(id, 1, name));
+                names.put(id, name);
+            }
+            String prefix = prefixes[random.nextInt(prefixes.length)];
+            int limit = 1 + random.nextInt(10);
+            assertEquals(expected(names, prefix, limit), ids(index.complete(prefix, limit)), "Step " + step + " completing " + prefix);
+        }
+    }
+
+    private static List<Long> expected(Map<Long, String> names, String prefix, int limit) {
+        return names.entrySet().stream()
+                .filter(entry -> SearchIndex.tokenize(entry.getValue()).stream().anyMatch(token -> token.startsWith(prefix)))
+                .sorted(Comparator.<Map.Entry<Long, String>>comparingInt(entry -> entry.getValue().length()).thenComparing(Map.Entry::getKey))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> names(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::getName).collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::getId).collect(Collectors.toList());
+    }
+
+    private static Artist artist(long id, String name, Album... albums) {
+        Artist artist = new Artist(name);
+        artist.setArtistId(id);
+        artist.addAll(new ArrayList<>(List.of(albums)));
+        return artist;
+    }
+
+    private static Album album(long id, long artistId, String title, Track... tracks) {
+        Album album = new Album(title, artistId);
+        album.setAlbumId(id);
+        album.addAll(new ArrayList<>(List.of(tracks)));
+        return album;
+    }
+
+    private static Track track(long id, long albumId, String name) {
+        Track track = new Track(name, albumId);
+        track.setTrackId(id);
+        return track;
+    }
+}
@@ -0,0 +1,97 @@
+package se.iths.persistency.snapshot;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.EmbeddedDatabase;
+import se.iths.persistency.dao.CatalogDAO;
+import se.iths.persistency.importer.CatalogImporter;
+import se.iths.persistency.importer.SqlInsertSource;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogSnapshotTest {
+    static Collection<Artist> catalog;
+    static CatalogSnapshot snapshot;
+
+    @BeforeAll
+    public static void setUp() throws SQLException, IOException {
+        EmbeddedDatabase.start("snapshot");
+        new CatalogImporter().importFrom(new SqlInsertSource(Path.of("../db_auto.sql")));
+        Connection con = ConnectionHandler.connect();
+        Statement stmt = con.createStatement();
+        stmt.executeUpdate("INSERT INTO Artist (ArtistId, Name) VALUES (1000, NULL)");
+        stmt.executeUpdate("INSERT INTO Track (TrackId, Name, AlbumId, MediaTypeId, Milliseconds, UnitPrice) VALUES (9000, 'No album', NULL, 1, 0, 0.99)");
+        ConnectionHandler.close(stmt);
+        ConnectionHandler.close(con);
+        catalog = new CatalogDAO().findAll();
+        snapshot = CatalogSnapshot.load();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        EmbeddedDatabase.stop();
+    }
+
+    @Test
+    public void shouldHoldTheSameTreeAsCatalogDAO() {
+        assertEquals(catalog.size(), snapshot.getArtistCount());
+        assertEquals(347, snapshot.getAlbumCount());
+        assertEquals(3503, snapshot.getTrackCount(), "Tracks without an album aren't part of the tree!");
+        for (Artist expected : catalog) {
+            Artist actual = snapshot.findArtistById(expected.getArtistId()).get();
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(ids(expected.getAlbums()), ids(actual.getAlbums()));
+            Iterator<Album> actualAlbums = actual.getAlbums().iterator();
+            for (Album album : expected.getAlbums()) {
+                Album actualAlbum = actualAlbums.next();
+                assertEquals(album.getTitle(), actualAlbum.getTitle());
+                assertEquals(album.getArtistId(), actualAlbum.getArtistId());
+                assertEquals(names(album.getTracks()), names(actualAlbum.getTracks()));
+            }
+        }
+        assertNull(snapshot.findArtistById(1000).get().getName());
+    }
+
+    @Test
+    public void shouldFindAlbumsAndTracksById() {
+        Album album = snapshot.findAlbumById(1).get();
+        assertEquals("For Those About To Rock We Salute You", album.getTitle());
+        assertEquals(1L, album.getArtistId());
+        assertEquals(10, album.getTracks().size());
+
+        Track track = snapshot.findTrackById(1).get();
+        assertEquals("For Those About To Rock (We Salute You)", track.getName());
+        assertEquals(1L, track.getAlbumId());
+
+        assertTrue(snapshot.findArtistById(999_999).isEmpty());
+        assertTrue(snapshot.findAlbumById(999_999).isEmpty());
+        assertTrue(snapshot.findTrackById(9000).isEmpty());
+    }
+
+    private static List<Long> ids(Collection<Album> albums) {
+        List<Long> ids = new ArrayList<>();
+        albums.forEach(album -> ids.add(album.getAlbumId()));
+        return ids;
+    }
+
+    private static List<String> names(Collection<Track> tracks) {
+        List<String> names = new ArrayList<>();
+        tracks.forEach(track -> names.add(track.getName()));
+        return names;
+    }
+}
@@ -0,0 +1,87 @@
+package se.iths.persistency.snapshot;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.iths.persistency.HighWaterMark;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotFileTest {
+    static final HighWaterMark MARK = new HighWaterMark(3, 20, 300, 7);
+    static CatalogSnapshot snapshot;
+
+    @BeforeAll
+    public static void setUp() {
+        List<Artist> catalog = new ArrayList<>();
+        long trackId = 100;
+        for (long artistId = 1; artistId <= 3; artistId++) {
+            Artist artist = new Artist(artistId == 2 ? null : "Art\u00efst " + artistId);
+            artist.setArtistId(artistId);
+            for (long albumId = artistId * 10; albumId < artistId * 10 + artistId - 1; albumId++) {
+                Album album = new Album("Album " + albumId, artistId);
+                album.setAlbumId(albumId);
+                for (int i = 0; i < 5; i++) {
+                    Track track = new Track(i % 2 == 0 ? "Intro" : "Track " + trackId, albumId);
+                    track.setTrackId(trackId++);
+                    album.add(track);
+                }
+                artist.add(album);
+            }
+            catalog.add(artist);
+        }
+        snapshot = CatalogSnapshot.of(catalog);
+    }
+
+    @Test
+    public void shouldMapTheSameCatalogItWrote(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        SnapshotFile.write(file, snapshot, MARK);
+
+        CatalogSnapshot mapped = SnapshotFile.open(file, MARK).get();
+
+        assertEquals(3, mapped.getArtistCount());
+        assertEquals(3, mapped.getAlbumCount());
+        assertEquals(15, mapped.getTrackCount());
+        assertEquals(describe(snapshot), describe(mapped));
+        assertEquals("Art\u00efst 3", mapped.findArtistById(3).get().getName());
+        assertNull(mapped.findArtistById(2).get().getName());
+        assertEquals(3L, mapped.findAlbumById(31).get().getArtistId());
+        assertEquals("Track 101", mapped.findTrackById(101).get().getName());
+        assertEquals(12, mapped.strings.size(), "Every distinct name must be stored once!");
+    }
+
+    @Test
+    public void shouldRejectStaleCorruptAndMissingFiles(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("catalog.snapshot");
+        assertTrue(SnapshotFile.open(file, MARK).isEmpty());
+
+        SnapshotFile.write(file, snapshot, MARK);
+        assertTrue(SnapshotFile.open(file, new HighWaterMark(3, 20, 300, 8)).isEmpty());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), channel.size() - 1);
+        }
+        assertTrue(SnapshotFile.open(file, MARK).isEmpty());
+    }
+
+    private static String describe(CatalogSnapshot snapshot) {
+        return snapshot.streamArtists()
+                .map(artist -> artist.getArtistId() + ":" + artist.getName() + artist.getAlbums().stream()
+                        .map(album -> album.getAlbumId() + ":" + album.getTitle() + album.getTracks())
+                        .collect(Collectors.toList()))
+                .collect(Collectors.joining("|"));
+    }
+}
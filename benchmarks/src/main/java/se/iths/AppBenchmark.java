@@ -0,0 +1,73 @@
+package se.iths;
+
+import org.openjdk.jmh.annotations.*;
+import se.iths.benchmarks.ChinookDatabase;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * App.load and the App.find*ById chains. Lives in App's package since the
+ * find methods are protected.
+ */
+@State(Scope.Benchmark)
+public class AppBenchmark {
+    static final int ARTISTS = 275;
+    static final int ALBUMS = 347;
+    static final int TRACKS = 3_503;
+
+    final App app = new App();
+    Path snapshotFile;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        ChinookDatabase.start();
+        snapshotFile = Files.createTempFile("catalog", ".snapshot");
+        // Writes the snapshot file, then loads the catalog the usual way
+        app.load(snapshotFile);
+        app.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ChinookDatabase.stop();
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    private long nextId(int max) {
+        next = next == Integer.MAX_VALUE ? 0 : next + 1;
+        return next % max + 1;
+    }
+
+    @Benchmark
+    public void load() throws SQLException {
+        app.load();
+    }
+
+    @Benchmark
+    public void loadFromSnapshot() throws SQLException, IOException {
+        app.load(snapshotFile);
+    }
+
+    @Benchmark
+    public Optional<Artist> findArtistById() throws SQLException {
+        return App.findArtistById(nextId(ARTISTS));
+    }
+
+    @Benchmark
+    public Optional<Album> findAlbumById() throws SQLException {
+        return App.findAlbumById(nextId(ALBUMS));
+    }
+
+    @Benchmark
+    public Optional<Track> findTrackById() throws SQLException {
+        return App.findTrackById(nextId(TRACKS));
+    }
+}
@@ -0,0 +1,40 @@
+package se.iths.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.iths.persistency.dao.CatalogDAO;
+import se.iths.persistency.model.Artist;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Full catalog loads and single artist trees through the joined query.
+ */
+@State(Scope.Benchmark)
+public class CatalogBenchmark {
+    final CatalogDAO catalogDAO = new CatalogDAO();
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        ChinookDatabase.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ChinookDatabase.stop();
+    }
+
+    @Benchmark
+    public Collection<Artist> findAll() throws SQLException {
+        return catalogDAO.findAll();
+    }
+
+    @Benchmark
+    public Optional<Artist> findByArtistId() throws SQLException {
+        next = next == Integer.MAX_VALUE ? 0 : next + 1;
+        return catalogDAO.findByArtistId(next % DaoBenchmark.ARTISTS + 1);
+    }
+}
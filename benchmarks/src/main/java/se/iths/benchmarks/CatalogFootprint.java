@@ -0,0 +1,39 @@
+package se.iths.benchmarks;
+
+import org.openjdk.jol.info.GraphLayout;
+import se.iths.persistency.dao.CatalogDAO;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.snapshot.CatalogSnapshot;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Loads the seeded catalog and prints how much heap the Artist/Album/Track
+ * graph retains, in total and per entity, next to the columnar
+ * {@link CatalogSnapshot} of the same rows.
+ */
+public class CatalogFootprint {
+
+    public static void main(String[] args) throws SQLException, IOException {
+        ChinookDatabase.start();
+        try {
+            Collection<Artist> catalog = new CatalogDAO().findAll();
+            GraphLayout layout = GraphLayout.parseInstance(catalog);
+            long albums = catalog.stream().mapToLong(artist -> artist.getAlbums().size()).sum();
+            long tracks = catalog.stream().flatMap(artist -> artist.getAlbums().stream())
+                    .mapToLong(album -> album.getTracks().size()).sum();
+            long entities = catalog.size() + albums + tracks;
+            System.out.println(layout.toFootprint());
+            System.out.printf("%d artists, %d albums, %d tracks: %d bytes, %d bytes per entity%n",
+                    catalog.size(), albums, tracks, layout.totalSize(), layout.totalSize() / entities);
+            GraphLayout snapshot = GraphLayout.parseInstance(CatalogSnapshot.load());
+            System.out.println(snapshot.toFootprint());
+            System.out.printf("Snapshot: %d bytes, %d bytes per entity%n",
+                    snapshot.totalSize(), snapshot.totalSize() / entities);
+        } finally {
+            ChinookDatabase.stop();
+        }
+    }
+}
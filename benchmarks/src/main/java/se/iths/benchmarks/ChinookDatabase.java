@@ -0,0 +1,82 @@
+package se.iths.benchmarks;
+
+import se.iths.persistency.ConnectionHandler;
+import se.iths.persistency.PoolConfig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * In-memory H2 database in MySQL mode, seeded from the same db_auto.sql
+ * script as the docker MySQL container. The script path is read from the
+ * chinook.script system property, which the jmh task sets.
+ */
+public class ChinookDatabase {
+    private static final String URL = "jdbc:h2:mem:chinook;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1";
+    // Not read by the DAOs, and their MySQL style dates (1962/2/18) don't parse in H2
+    private static final List<String> UNUSED_TABLES = List.of("`Employee`", "`Customer`", "`Invoice`", "`InvoiceLine`");
+
+    public static void start() throws SQLException, IOException {
+        ConnectionHandler.configure(new PoolConfig(URL, "sa", ""));
+        Connection con = ConnectionHandler.connect();
+        Statement stmt = con.createStatement();
+        stmt.execute("DROP ALL OBJECTS");
+        load(stmt, Path.of(System.getProperty("chinook.script", "db_auto.sql")));
+        // The change log table of db_changelog.sql without its MySQL triggers,
+        // the benchmarks never refresh the catalog incrementally
+        stmt.execute("CREATE TABLE CatalogChange (ChangeId BIGINT NOT NULL AUTO_INCREMENT, TableName VARCHAR(10) NOT NULL,"
+                + " RowId INT NOT NULL, ParentId INT, PRIMARY KEY (ChangeId))");
+        ConnectionHandler.close(stmt);
+        ConnectionHandler.close(con);
+    }
+
+    public static void stop() {
+        ConnectionHandler.shutdown();
+    }
+
+    // Runs the script one statement at a time, skipping the comment banners,
+    // the statements that create and select the MySQL database itself and the
+    // rows of the unused tables
+    private static void load(Statement stmt, Path script) throws IOException, SQLException {
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            StringBuilder sql = new StringBuilder();
+            boolean inComment = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.replace("\uFEFF", "").trim();
+                if (inComment || line.startsWith("/*")) {
+                    inComment = !line.endsWith("*/");
+                    continue;
+                }
+                if (line.isEmpty()) continue;
+                sql.append(line).append('\n');
+                if (line.endsWith(";")) {
+                    String statement = sql.toString().trim();
+                    sql.setLength(0);
+                    if (isDatabaseStatement(statement) || isUnusedInsert(statement)) continue;
+                    stmt.execute(statement.substring(0, statement.length() - 1));
+                }
+            }
+        }
+    }
+
+    private static boolean isDatabaseStatement(String statement) {
+        String upper = statement.toUpperCase();
+        return upper.startsWith("DROP DATABASE") || upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ");
+    }
+
+    private static boolean isUnusedInsert(String statement) {
+        for (String table : UNUSED_TABLES) {
+            if (statement.startsWith("INSERT INTO " + table + " ")) return true;
+        }
+        return false;
+    }
+}
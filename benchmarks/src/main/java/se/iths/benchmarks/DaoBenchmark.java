@@ -0,0 +1,111 @@
+package se.iths.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.iths.persistency.dao.AlbumDAO;
+import se.iths.persistency.dao.ArtistDAO;
+import se.iths.persistency.dao.TrackDAO;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * One benchmark per CRUDInterface operation, run against the seeded Chinook
+ * catalog. Lookups walk through the seeded ids so consecutive calls don't
+ * hit the same row. Writes insert their own rows and remove them again.
+ */
+@State(Scope.Benchmark)
+public class DaoBenchmark {
+    static final int ARTISTS = 275;
+    static final int ALBUMS = 347;
+    static final int TRACKS = 3_503;
+    static final int BATCH = 100;
+
+    final ArtistDAO artistDAO = new ArtistDAO();
+    final AlbumDAO albumDAO = new AlbumDAO();
+    final TrackDAO trackDAO = new TrackDAO();
+    int next;
+    Album album;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        ChinookDatabase.start();
+        album = albumDAO.findById(1).get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ChinookDatabase.stop();
+    }
+
+    private long nextId(int max) {
+        next = next == Integer.MAX_VALUE ? 0 : next + 1;
+        return next % max + 1;
+    }
+
+    @Benchmark
+    public Optional<Artist> findArtistById() throws SQLException {
+        return artistDAO.findById(nextId(ARTISTS));
+    }
+
+    @Benchmark
+    public Optional<Album> findAlbumById() throws SQLException {
+        return albumDAO.findById(nextId(ALBUMS));
+    }
+
+    @Benchmark
+    public Optional<Track> findTrackById() throws SQLException {
+        return trackDAO.findById(nextId(TRACKS));
+    }
+
+    @Benchmark
+    public Collection<Album> findAlbumsByArtistId() throws SQLException {
+        return albumDAO.findByArtistId(nextId(ARTISTS));
+    }
+
+    @Benchmark
+    public Collection<Track> findTracksByAlbumId() throws SQLException {
+        return trackDAO.findByAlbumId(nextId(ALBUMS));
+    }
+
+    @Benchmark
+    public Collection<Track> findAllTracks() throws SQLException {
+        return trackDAO.findAll();
+    }
+
+    @Benchmark
+    public long streamAllTracks() throws SQLException {
+        try (Stream<Track> tracks = trackDAO.streamAll()) {
+            return tracks.count();
+        }
+    }
+
+    @Benchmark
+    public boolean createAndDeleteTrack() throws SQLException {
+        Track track = trackDAO.create(new Track("Benchmark track", album.getAlbumId())).get();
+        return trackDAO.deleteById(track.getTrackId());
+    }
+
+    @Benchmark
+    public Optional<Track> updateTrack() throws SQLException {
+        Track track = trackDAO.findById(nextId(TRACKS)).get();
+        return trackDAO.update(track);
+    }
+
+    @Benchmark
+    public int createAllAndDeleteAllTracks() throws SQLException {
+        List<Track> tracks = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            tracks.add(new Track("Benchmark track " + i, album.getAlbumId()));
+        }
+        trackDAO.createAll(tracks);
+        return trackDAO.deleteAll(tracks).getAffectedRows();
+    }
+}
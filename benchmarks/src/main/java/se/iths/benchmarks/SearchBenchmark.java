@@ -0,0 +1,76 @@
+package se.iths.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se.iths.persistency.model.Album;
+import se.iths.persistency.model.Artist;
+import se.iths.persistency.model.Track;
+import se.iths.persistency.search.SearchHit;
+import se.iths.persistency.search.SearchIndex;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Completions and searches over a generated catalog of a million tracks, far
+ * more than Chinook has. Names are drawn from a small vocabulary so common
+ * prefixes match hundreds of thousands of entries.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsAppend = "-Xmx2g")
+public class SearchBenchmark {
+    static final int ARTISTS = 10_000;
+    static final int ALBUMS_PER_ARTIST = 10;
+    static final int TRACKS_PER_ALBUM = 10;
+    static final String[] WORDS = {"love", "night", "blue", "heart", "fire", "rain", "dream", "road", "light", "stone",
+            "river", "moon", "dance", "song", "gold", "black", "wild", "home", "time", "city",
+            "summer", "winter", "angel", "devil", "ocean", "star", "shadow", "storm", "sweet", "lonely"};
+    static final String[] PREFIXES = {"l", "lo", "lov", "b", "bl", "st", "sto", "w", "wi", "dre"};
+    final SearchIndex index = new SearchIndex();
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        long albumId = 0;
+        long trackId = 0;
+        for (long artistId = 1; artistId <= ARTISTS; artistId++) {
+            Artist artist = new Artist(name(random, 2) + " " + artistId);
+            artist.setArtistId(artistId);
+            index.put(artist);
+            for (int a = 0; a < ALBUMS_PER_ARTIST; a++) {
+                Album album = new Album(name(random, 3), artistId);
+                album.setAlbumId(++albumId);
+                index.put(album);
+                for (int t = 0; t < TRACKS_PER_ALBUM; t++) {
+                    Track track = new Track(name(random, 1 + random.nextInt(4)), albumId);
+                    track.setTrackId(++trackId);
+                    index.put(track);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<SearchHit> completeWord() {
+        return index.complete(PREFIXES[next++ % PREFIXES.length], 10);
+    }
+
+    @Benchmark
+    public List<SearchHit> completeTwoWords() {
+        return index.complete("dream " + PREFIXES[next++ % PREFIXES.length], 10);
+    }
+
+    @Benchmark
+    public List<SearchHit> search() {
+        return index.search(WORDS[next++ % WORDS.length] + " " + WORDS[next % WORDS.length], 10);
+    }
+
+    private static String name(Random random, int words) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) name.append(' ');
+            name.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+   Change log for incremental catalog refresh and snapshot staleness checks.
+   Run after db_auto.sql. Inserts aren't logged, new rows are found by id.
+   Don't prune CatalogChange, the high-water mark reads its max ChangeId.
+********************************************************************************/
+USE `Chinook`;
+
+CREATE TABLE `CatalogChange`
+(
+    `ChangeId` BIGINT NOT NULL AUTO_INCREMENT,
+    `TableName` VARCHAR(10) NOT NULL,
+    `RowId` INT NOT NULL,
+    `ParentId` INT,
+    CONSTRAINT `PK_CatalogChange` PRIMARY KEY  (`ChangeId`)
+);
+
+CREATE TRIGGER `TR_ArtistUpdate` AFTER UPDATE ON `Artist` FOR EACH ROW
+    INSERT INTO `CatalogChange` (`TableName`, `RowId`) VALUES ('Artist', OLD.`ArtistId`);
+
+CREATE TRIGGER `TR_ArtistDelete` AFTER DELETE ON `Artist` FOR EACH ROW
+    INSERT INTO `CatalogChange` (`TableName`, `RowId`) VALUES ('Artist', OLD.`ArtistId`);
+
+CREATE TRIGGER `TR_AlbumUpdate` AFTER UPDATE ON `Album` FOR EACH ROW
+    INSERT INTO `CatalogChange` (`TableName`, `RowId`, `ParentId`) VALUES ('Album', OLD.`AlbumId`, OLD.`ArtistId`);
+
+CREATE TRIGGER `TR_AlbumDelete` AFTER DELETE ON `Album` FOR EACH ROW
+    INSERT INTO `CatalogChange` (`TableName`, `RowId`, `ParentId`) VALUES ('Album', OLD.`AlbumId`, OLD.`ArtistId`);
+
+CREATE TRIGGER `TR_TrackUpdate` AFTER UPDATE ON `Track` FOR EACH ROW
+    INSERT INTO `CatalogChange` (`TableName`, `RowId`, `ParentId`) VALUES ('Track', OLD.`TrackId`, OLD.`AlbumId`);
+
+CREATE TRIGGER `TR_TrackDelete` AFTER DELETE ON `Track` FOR EACH ROW
+    INSERT INTO `CatalogChange` (`TableName`, `RowId`, `ParentId`) VALUES ('Track', OLD.`TrackId`, OLD.`AlbumId`);